@@ -1,7 +1,6 @@
 package edu.ucsf.rbvi.boundaryLayout.internal.algorithms;
 
 import java.awt.geom.Rectangle2D;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -9,26 +8,34 @@ import java.util.List;
  */
 public class BoundaryContainsAlgorithm {
 	
+	/**
+	 * Given a certain rectangle and intersecting rectangles, this method finds the largest area
+	 * of the rectangle, which is a subrectangle of the particular given rectangle not intersected by
+	 * the list of intersecting rectangles.
+	 * 
+	 * @param thisShape is the boundary bounding box, of which the method finds the largest area
+	 * @param intersectingShapes is a list of bounding boxes that intersecting with thisShape bounding box
+	 * @return list holding the rectangle corresponding to the area where nodes can be initialized safely
+	 * @precondition thisShape != null and intersecting shapes != null
+	 */
+	public static List<Rectangle2D> doAlgorithm(Rectangle2D thisShape, List<Rectangle2D> intersectingShapes) {
+		return doAlgorithm(thisShape, intersectingShapes, 1);
+	}
+
 	/**
 	 * Given a certain rectangle and intersecting rectangles, this method finds a list of the largest
-	 * areas. These areas are rectangles sorted in high-low order by their area. Important to note is these
-	 * rectangles, which are subrectangles of the particular given rectangle, are not intersected by the
-	 * list of intersecting rectangles.
+	 * areas. These areas are maximal rectangles sorted in high-low order by their area. Important to note
+	 * is these rectangles, which are subrectangles of the particular given rectangle, are not intersected
+	 * by the list of intersecting rectangles, but may overlap each other.
 	 * 
 	 * @param thisShape is the boundary bounding box, of which the method finds the list of areas
 	 * @param intersectingShapes is a list of bounding boxes that intersecting with thisShape bounding box
-	 * @return list of rectangles corresponding to areas where nodes can be initialized safely
-	 * @precondition thisShape != null and intersecting shapes !- null
+	 * @param count is the maximal number of areas to find
+	 * @return list of rectangles corresponding to areas where nodes can be initialized safely, empty if
+	 * the intersecting shapes cover thisShape entirely
+	 * @precondition thisShape != null and intersecting shapes != null
 	 */
-	public static List<Rectangle2D> doAlgorithm(Rectangle2D thisShape, List<Rectangle2D> intersectingShapes) {
-		List<Rectangle2D> boundingAreas = new ArrayList<>();
-		
-		BoundaryTree shapeTree = new BoundaryTree(new BoundaryTreeNode(thisShape));
-		
-		while(!intersectingShapes.isEmpty()) 
-			shapeTree.do2DShapePartitioning(intersectingShapes.remove(0));
-		
-		boundingAreas = shapeTree.getLargestAreas(); 
-		return boundingAreas;
+	public static List<Rectangle2D> doAlgorithm(Rectangle2D thisShape, List<Rectangle2D> intersectingShapes, int count) {
+		return MaximalEmptyRectangles.findLargest(thisShape, intersectingShapes, count);
 	}
 }
@@ -0,0 +1,158 @@
+package edu.ucsf.rbvi.boundaryLayout.internal.algorithms;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * BoundaryIndex is a static R-tree over a list of bounding boxes, packed once with the
+ * Sort-Tile-Recursive algorithm: the boxes are sorted into vertical slices by their center x,
+ * every slice is sorted by center y, and consecutive runs of boxes are grouped into nodes level
+ * by level up to a single root. The index answers which boxes overlap a point or a rectangle in
+ * O(log B + k) for B boxes and k results.
+ *
+ * Every box is identified by its position in the list the index was built from. Queries write
+ * the ids of the overlapping boxes in ascending order into an array passed by the caller, so they
+ * do not allocate and several threads may query the same index concurrently.
+ *
+ * @var levels holds the boxes of every level of the tree as [minX, minY, maxX, maxY] per node, the
+ * boxes themselves being level 0 and the root the single node of the last level
+ * @var ids holds the id of every box of level 0
+ */
+public class BoundaryIndex {
+	private static final int NODE_CAPACITY = 8;
+
+	private final int size;
+	private final int[] ids;
+	private final double[][] levels;
+
+	/**
+	 * Construct the index of the given bounding boxes
+	 * @param boxes is the list of bounding boxes, a box is identified by its position in the list
+	 */
+	public BoundaryIndex(List<Rectangle2D> boxes) {
+		size = boxes.size();
+		Integer[] order = new Integer[size];
+		for(int i = 0; i < size; i++)
+			order[i] = i;
+
+		// tile the boxes into vertical slices of whole nodes, each sorted from top to bottom
+		int leaves = (size + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		int sliceSize = (int) Math.ceil(Math.sqrt(leaves)) * NODE_CAPACITY;
+		Arrays.sort(order, Comparator.comparingDouble(i -> boxes.get(i).getCenterX()));
+		for(int from = 0; from < size; from += sliceSize)
+			Arrays.sort(order, from, Math.min(from + sliceSize, size),
+					Comparator.comparingDouble(i -> boxes.get(i).getCenterY()));
+
+		ids = new int[size];
+		double[] entries = new double[4 * size];
+		for(int k = 0; k < size; k++) {
+			Rectangle2D box = boxes.get(order[k]);
+			ids[k] = order[k];
+			entries[4*k] = box.getMinX();
+			entries[4*k+1] = box.getMinY();
+			entries[4*k+2] = box.getMaxX();
+			entries[4*k+3] = box.getMaxY();
+		}
+
+		int height = 1;
+		for(int count = size; count > 1; count = (count + NODE_CAPACITY - 1) / NODE_CAPACITY)
+			height++;
+		levels = new double[height][];
+		levels[0] = entries;
+		for(int level = 1; level < height; level++)
+			levels[level] = packLevel(levels[level - 1]);
+	}
+
+	/** Private method
+	 * @return the boxes of the nodes grouping consecutive runs of the given child boxes
+	 */
+	private static double[] packLevel(double[] children) {
+		int childCount = children.length / 4;
+		int count = (childCount + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		double[] nodes = new double[4 * count];
+		for(int node = 0; node < count; node++) {
+			int from = node * NODE_CAPACITY, to = Math.min(from + NODE_CAPACITY, childCount);
+			nodes[4*node] = nodes[4*node+1] = Double.POSITIVE_INFINITY;
+			nodes[4*node+2] = nodes[4*node+3] = Double.NEGATIVE_INFINITY;
+			for(int child = from; child < to; child++) {
+				nodes[4*node] = Math.min(nodes[4*node], children[4*child]);
+				nodes[4*node+1] = Math.min(nodes[4*node+1], children[4*child+1]);
+				nodes[4*node+2] = Math.max(nodes[4*node+2], children[4*child+2]);
+				nodes[4*node+3] = Math.max(nodes[4*node+3], children[4*child+3]);
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * @return the number of boxes in the index
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Find the boxes containing a point, borders included
+	 * @param x and @param y are the coordinates of the point
+	 * @param result receives the ids of the boxes in ascending order, it must hold size() ids
+	 * @return the number of ids written to result
+	 */
+	public int query(double x, double y, int[] result) {
+		return query(x, y, x, y, result);
+	}
+
+	/**
+	 * Find the boxes overlapping a rectangle, borders included
+	 * @param rectangle is the rectangle the boxes have to overlap
+	 * @param result receives the ids of the boxes in ascending order, it must hold size() ids
+	 * @return the number of ids written to result
+	 */
+	public int query(Rectangle2D rectangle, int[] result) {
+		return query(rectangle.getMinX(), rectangle.getMinY(), rectangle.getMaxX(), rectangle.getMaxY(), result);
+	}
+
+	/**
+	 * Find the boxes overlapping the rectangle [minX, maxX] x [minY, maxY], borders included
+	 * @param result receives the ids of the boxes in ascending order, it must hold size() ids
+	 * @return the number of ids written to result
+	 */
+	public int query(double minX, double minY, double maxX, double maxY, int[] result) {
+		if(size == 0)
+			return 0;
+		int root = levels.length - 1;
+		if(!overlaps(levels[root], 0, minX, minY, maxX, maxY))
+			return 0;
+		int count = search(root, 0, minX, minY, maxX, maxY, result, 0);
+		Arrays.sort(result, 0, count);
+		return count;
+	}
+
+	/** Private method
+	 * Collect the ids of the boxes below @param node of @param level overlapping the rectangle,
+	 * the node itself overlapping it
+	 * @return the number of ids in result
+	 */
+	private int search(int level, int node, double minX, double minY, double maxX, double maxY,
+			int[] result, int count) {
+		if(level == 0) {
+			result[count++] = ids[node];
+			return count;
+		}
+		double[] children = levels[level - 1];
+		int from = node * NODE_CAPACITY, to = Math.min(from + NODE_CAPACITY, children.length / 4);
+		for(int child = from; child < to; child++)
+			if(overlaps(children, child, minX, minY, maxX, maxY))
+				count = search(level - 1, child, minX, minY, maxX, maxY, result, count);
+		return count;
+	}
+
+	/** Private method
+	 * @return true if the box @param node of @param boxes overlaps the rectangle, borders included
+	 */
+	private static boolean overlaps(double[] boxes, int node, double minX, double minY, double maxX, double maxY) {
+		return boxes[4*node] <= maxX && boxes[4*node+2] >= minX
+				&& boxes[4*node+1] <= maxY && boxes[4*node+3] >= minY;
+	}
+}
@@ -3,7 +3,7 @@ package edu.ucsf.rbvi.boundaryLayout.internal.algorithms;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Queue;
 
@@ -154,42 +154,84 @@ public class BoundaryTree {
 	 * takes into account the intersection of rectangles, in which case the intersected area
 	 * is not duplicated.
 	 * 
+	 * A vertical line is swept across the rectangles from left to right, stopping at their left
+	 * and right edges. A segment tree over the distinct y coordinates of the rectangles maintains
+	 * the length of the line covered by at least one rectangle, so that the area between two stops
+	 * is that length times the distance between them. This takes O(n log n) for n rectangles.
+	 * 
 	 * @param areas: a list of rectangles of which you want to find the total area
 	 * @return the total area, taking into account intersections between rectangles
 	 * */
 	public static double getTotalArea(List<Rectangle2D> areas) {
-		double totalArea = 0.;
-		int areasCounter = 0;
-		Iterator<Rectangle2D> recIterator = areas.iterator();
+		int n = areas.size();
+		if(n == 0)
+			return 0.;
 
-		while(recIterator.hasNext()) {
-			Rectangle2D nextRect = recIterator.next();
-			totalArea += getNonIntersectedArea(nextRect, areas, areasCounter++);
+		// compress the y coordinates; segment i of the tree spans [ys[i], ys[i+1])
+		double[] ys = new double[2 * n];
+		for(int i = 0; i < n; i++) {
+			ys[2*i] = areas.get(i).getMinY();
+			ys[2*i+1] = areas.get(i).getMaxY();
 		}
+		Arrays.sort(ys);
+		int distinct = 0;
+		for(int i = 0; i < ys.length; i++)
+			if(distinct == 0 || ys[i] != ys[distinct - 1])
+				ys[distinct++] = ys[i];
+		int segments = distinct - 1;
+		if(segments <= 0)
+			return 0.;
 
+		// an event opens (+1) or closes (-1) the y range of a rectangle at its left or right edge
+		double[] eventX = new double[2 * n];
+		Integer[] order = new Integer[2 * n];
+		for(int i = 0; i < n; i++) {
+			eventX[2*i] = areas.get(i).getMinX();
+			eventX[2*i+1] = areas.get(i).getMaxX();
+			order[2*i] = 2*i;
+			order[2*i+1] = 2*i+1;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(eventX[a], eventX[b]));
+
+		int[] count = new int[4 * segments];
+		double[] covered = new double[4 * segments];
+		double totalArea = 0.;
+		for(int e = 0; e < order.length; e++) {
+			int event = order[e];
+			if(e > 0)
+				totalArea += covered[1] * (eventX[event] - eventX[order[e - 1]]);
+			Rectangle2D rect = areas.get(event / 2);
+			int from = Arrays.binarySearch(ys, 0, distinct, rect.getMinY());
+			int to = Arrays.binarySearch(ys, 0, distinct, rect.getMaxY());
+			if(from < to)
+				updateCover(count, covered, ys, 1, 0, segments, from, to, event % 2 == 0 ? 1 : -1);
+		}
 		return totalArea;
 	}
 
 	/** Private method
-	 * @param nextRect is a rectangle you want to find the area of
-	 * @param areas is a list of rectangles that you must compare nextRect with to determine
-	 * any intersections
-	 * @param areasCounter is a counter for the upper limit in the list areas for the method to look at
-	 * 
-	 * @return the non-intersected area of nextRect with respect to the list areas
+	 * Add @param delta to the cover count of the segments [from, to) below the segment tree node
+	 * @param node, which spans the segments [lo, hi), and update the covered lengths
+	 * @param count holds the number of rectangles covering the whole range of every node
+	 * @param covered holds the length of the range of every node covered by at least one rectangle
 	 * */
-	private static double getNonIntersectedArea(Rectangle2D nextRect, List<Rectangle2D> areas, int areasCounter) {
-		List<Rectangle2D> intersections = new ArrayList<>();
-		for(int intersect = 0; intersect < areasCounter; intersect++) {
-			Rectangle2D intersectRect = areas.get(intersect);
-			if(nextRect.intersects(intersectRect)) {
-				Rectangle2D intersection = new Rectangle2D.Double();
-				Rectangle2D.intersect(nextRect, intersectRect, intersection);
-				intersections.add(intersection);
-			}
+	private static void updateCover(int[] count, double[] covered, double[] ys, int node, 
+			int lo, int hi, int from, int to, int delta) {
+		if(to <= lo || hi <= from)
+			return;
+		if(from <= lo && hi <= to) {
+			count[node] += delta;
+		} else {
+			int mid = (lo + hi) >>> 1;
+			updateCover(count, covered, ys, 2*node, lo, mid, from, to, delta);
+			updateCover(count, covered, ys, 2*node+1, mid, hi, from, to, delta);
 		}
-		double repeatArea = getTotalArea(intersections);
-		return nextRect.getWidth() * nextRect.getHeight() - repeatArea;
+		if(count[node] > 0)
+			covered[node] = ys[hi] - ys[lo];
+		else if(hi - lo == 1)
+			covered[node] = 0.;
+		else
+			covered[node] = covered[2*node] + covered[2*node+1];
 	}
 
 	/** Private method
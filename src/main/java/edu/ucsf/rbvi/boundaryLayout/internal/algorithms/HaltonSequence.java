@@ -0,0 +1,60 @@
+package edu.ucsf.rbvi.boundaryLayout.internal.algorithms;
+
+/**
+ * This class generates the Halton sequence, a low-discrepancy sequence of points in the unit
+ * square. Its points cover the square far more evenly than random points: every prefix of the
+ * sequence is spread out over the whole square, without clusters or gaps. Coordinate i of the
+ * n'th point is the radical inverse of n in the i'th prime base, here 2 for x and 3 for y.
+ */
+public class HaltonSequence {
+	private int index;
+
+	/**
+	 * Construct a Halton sequence starting at its first point
+	 */
+	public HaltonSequence() {
+		this(1);
+	}
+
+	/**
+	 * Construct a Halton sequence starting at a given point
+	 * @param index is the index of the first point, the point at index 0 is the origin
+	 */
+	public HaltonSequence(int index) {
+		this.index = index;
+	}
+
+	/**
+	 * Advance to the next point of the sequence
+	 */
+	public void next() {
+		index++;
+	}
+
+	/**
+	 * @return the x coordinate in [0, 1) of the current point
+	 */
+	public double getX() {
+		return radicalInverse(index, 2);
+	}
+
+	/**
+	 * @return the y coordinate in [0, 1) of the current point
+	 */
+	public double getY() {
+		return radicalInverse(index, 3);
+	}
+
+	/**
+	 * @return the radical inverse of @param index in @param base: the digits of index in base
+	 * mirrored around the radix point
+	 */
+	public static double radicalInverse(int index, int base) {
+		double inverse = 0., digitValue = 1. / base;
+		for(int n = index; n > 0; n /= base) {
+			inverse += (n % base) * digitValue;
+			digitValue /= base;
+		}
+		return inverse;
+	}
+}
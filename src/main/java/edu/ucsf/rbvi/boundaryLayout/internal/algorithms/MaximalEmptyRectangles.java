@@ -0,0 +1,142 @@
+package edu.ucsf.rbvi.boundaryLayout.internal.algorithms;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * This class finds the largest rectangles within a bounding rectangle which are not covered by any
+ * of a list of obstacle rectangles. A free rectangle is maximal when it cannot be extended in any
+ * direction without covering an obstacle or leaving the bounds.
+ *
+ * The edges of the obstacles cut the bounds into a grid of at most (2n+1) x (2n+1) cells for n
+ * obstacles, every cell being either fully covered or fully free, and every maximal free rectangle
+ * is a union of cells. The grid is swept row by row keeping, for every column, the height of the
+ * staircase of free cells ending at the row; a stack over the staircase reports every rectangle
+ * that is maximal to the left, to the right and upwards exactly once, and those that cannot be
+ * extended into the next row are maximal. The sweep takes time linear in the number of cells, and
+ * the k largest rectangles are kept in a bounded heap.
+ */
+public class MaximalEmptyRectangles {
+
+	/** Orders rectangles by increasing area, ties broken by position so that results are stable */
+	private static final Comparator<Rectangle2D> BY_AREA = Comparator
+			.comparingDouble((Rectangle2D r) -> r.getWidth() * r.getHeight())
+			.thenComparing(Comparator.comparingDouble(Rectangle2D::getY).reversed())
+			.thenComparing(Comparator.comparingDouble(Rectangle2D::getX).reversed());
+
+	/**
+	 * Find the largest maximal free rectangles of the given bounds
+	 * @param bounds is the rectangle within which free rectangles are searched
+	 * @param obstacles is the list of rectangles covering parts of bounds, they may overlap each
+	 * other and extend beyond bounds
+	 * @param k is the maximal number of rectangles to return
+	 * @return at most k maximal free rectangles, sorted from the largest area to the smallest; an
+	 * empty list if the obstacles cover the bounds entirely
+	 */
+	public static List<Rectangle2D> findLargest(Rectangle2D bounds, List<Rectangle2D> obstacles, int k) {
+		List<Rectangle2D> clipped = new ArrayList<>();
+		for(Rectangle2D obstacle : obstacles) {
+			Rectangle2D clip = bounds.createIntersection(obstacle);
+			if(clip.getWidth() > 0 && clip.getHeight() > 0)
+				clipped.add(clip);
+		}
+
+		double[] xs = edges(bounds.getMinX(), bounds.getMaxX(), clipped, true);
+		double[] ys = edges(bounds.getMinY(), bounds.getMaxY(), clipped, false);
+		int columns = xs.length - 1, rows = ys.length - 1;
+		if(k <= 0 || columns <= 0 || rows <= 0)
+			return new ArrayList<>();
+
+		// mark the covered cells with a 2D difference array, then accumulate it
+		int[][] covered = new int[rows + 1][columns + 1];
+		for(Rectangle2D clip : clipped) {
+			int x1 = Arrays.binarySearch(xs, clip.getMinX()), x2 = Arrays.binarySearch(xs, clip.getMaxX());
+			int y1 = Arrays.binarySearch(ys, clip.getMinY()), y2 = Arrays.binarySearch(ys, clip.getMaxY());
+			covered[y1][x1]++;
+			covered[y1][x2]--;
+			covered[y2][x1]--;
+			covered[y2][x2]++;
+		}
+		for(int row = 0; row < rows; row++)
+			for(int column = 0; column < columns; column++) {
+				if(row > 0)
+					covered[row][column] += covered[row - 1][column];
+				if(column > 0)
+					covered[row][column] += covered[row][column - 1];
+				if(row > 0 && column > 0)
+					covered[row][column] -= covered[row - 1][column - 1];
+			}
+
+		PriorityQueue<Rectangle2D> largest = new PriorityQueue<>(k + 1, BY_AREA);
+		int[] heights = new int[columns + 1];
+		int[] stack = new int[columns + 1];
+		int[] blockedBelow = new int[columns + 1];
+		for(int row = 0; row < rows; row++) {
+			for(int column = 0; column < columns; column++)
+				heights[column] = covered[row][column] > 0 ? 0 : heights[column] + 1;
+			// blockedBelow[c] counts the covered cells of the next row in the columns [0, c)
+			for(int column = 0; column < columns; column++)
+				blockedBelow[column + 1] = blockedBelow[column] +
+						(row + 1 < rows && covered[row + 1][column] > 0 ? 1 : 0);
+
+			int top = 0;
+			for(int column = 0; column <= columns; column++) {
+				int height = column < columns ? heights[column] : 0;
+				while(top > 0 && heights[stack[top - 1]] >= height) {
+					int tallest = heights[stack[--top]];
+					// a rectangle as tall as the current column extends to the right, it is reported later
+					if(tallest == 0 || tallest == height)
+						continue;
+					int left = top > 0 ? stack[top - 1] + 1 : 0;
+					boolean maximalBelow = row + 1 == rows || blockedBelow[column] - blockedBelow[left] > 0;
+					if(maximalBelow)
+						offer(largest, k, new Rectangle2D.Double(xs[left], ys[row + 1 - tallest],
+								xs[column] - xs[left], ys[row + 1] - ys[row + 1 - tallest]));
+				}
+				stack[top++] = column;
+			}
+		}
+
+		List<Rectangle2D> result = new ArrayList<>(largest);
+		Collections.sort(result, BY_AREA.reversed());
+		return result;
+	}
+
+	/** Private method
+	 * @return the sorted distinct coordinates of the bounds [min, max] and of the obstacle edges
+	 * along the x axis if @param horizontal, along the y axis otherwise
+	 */
+	private static double[] edges(double min, double max, List<Rectangle2D> obstacles, boolean horizontal) {
+		double[] edges = new double[2 * obstacles.size() + 2];
+		int count = 0;
+		edges[count++] = min;
+		edges[count++] = max;
+		for(Rectangle2D obstacle : obstacles) {
+			edges[count++] = horizontal ? obstacle.getMinX() : obstacle.getMinY();
+			edges[count++] = horizontal ? obstacle.getMaxX() : obstacle.getMaxY();
+		}
+		Arrays.sort(edges);
+		int distinct = 0;
+		for(int i = 0; i < count; i++)
+			if(distinct == 0 || edges[i] != edges[distinct - 1])
+				edges[distinct++] = edges[i];
+		return Arrays.copyOf(edges, distinct);
+	}
+
+	/** Private method
+	 * Add @param rectangle to the heap @param largest, keeping only the k largest rectangles
+	 */
+	private static void offer(PriorityQueue<Rectangle2D> largest, int k, Rectangle2D rectangle) {
+		if(largest.size() < k) {
+			largest.add(rectangle);
+		} else if(BY_AREA.compare(rectangle, largest.peek()) > 0) {
+			largest.poll();
+			largest.add(rectangle);
+		}
+	}
+}
@@ -0,0 +1,358 @@
+package edu.ucsf.rbvi.boundaryLayout.internal.algorithms;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * This class removes the overlaps between rectangles while moving them as little as possible, following
+ * the scan line and variable placement with separation constraints (VPSC) approach of Dwyer, Marriott
+ * and Stuckey. Overlaps are removed by a horizontal pass and then a vertical pass. Each pass sweeps a
+ * scan line across the rectangles, keeping the open rectangles ordered by their center, and constrains
+ * every rectangle to be separated from its neighbors in that order; the horizontal pass only keeps the
+ * constraints between overlapping rectangles which are cheaper to separate horizontally, the vertical
+ * pass keeps all of them so that no overlap remains. The constraints are then satisfied by merging the
+ * rectangles into blocks which move together, every block being placed at the weighted mean of the
+ * desired positions of its rectangles. Both steps take O(N log N) time for N rectangles.
+ *
+ * The rectangles may be kept within bounds, which take part in every pass as two heavy rectangles of
+ * no size at the edges of the bounds. If the rectangles do not fit, the edges give way. Every rectangle
+ * may also be given limits of its own, the range its center may move in along the axis of a pass, which
+ * take part in the pass as two heavy rectangles of no size at the ends of the range.
+ */
+public class OverlapRemoval {
+
+	/** The weight of the edges of the bounds relative to that of a rectangle */
+	private static final double BOUNDS_WEIGHT = 1e6;
+	private static final double EPSILON = 1e-9;
+
+	/**
+	 * The limits of the rectangles, looked up before every pass as the rectangles have moved along the
+	 * other axis
+	 */
+	public interface Limits {
+		/**
+		 * @return the range the center of rectangle @param i, at (@param x, @param y), may move in along
+		 * the x axis if @param horizontal, along the y axis otherwise, or null if it is not limited
+		 */
+		double[] getRange(int i, double x, double y, boolean horizontal);
+	}
+
+	/**
+	 * Move rectangles so that none overlap
+	 * @param x and @param y hold the centers of the rectangles, they are updated in place
+	 * @param width and @param height hold the dimensions of the rectangles
+	 * @param bounds is the rectangle the rectangles are kept within, null if they are not bounded
+	 * @param gap is the space left between two rectangles
+	 */
+	public static void removeOverlaps(double[] x, double[] y, double[] width, double[] height,
+			Rectangle2D bounds, double gap) {
+		removeOverlaps(x, y, width, height, bounds, null, gap);
+	}
+
+	/**
+	 * Move rectangles so that none overlap, each staying within its own limits
+	 * @param x and @param y hold the centers of the rectangles, they are updated in place
+	 * @param width and @param height hold the dimensions of the rectangles
+	 * @param bounds is the rectangle the rectangles are kept within, null if they are not bounded
+	 * @param limits gives the range of every rectangle along each axis, null if they are not limited
+	 * @param gap is the space left between two rectangles
+	 */
+	public static void removeOverlaps(double[] x, double[] y, double[] width, double[] height,
+			Rectangle2D bounds, Limits limits, double gap) {
+		int n = x.length;
+		if(n < 2)
+			return;
+		double[] solved = separate(x, width, y, height,
+				bounds == null ? null : new double[] {bounds.getMinX(), bounds.getMaxX()}, 
+				getRanges(x, y, limits, true), gap, true);
+		System.arraycopy(solved, 0, x, 0, n);
+		solved = separate(y, height, x, width,
+				bounds == null ? null : new double[] {bounds.getMinY(), bounds.getMaxY()}, 
+				getRanges(x, y, limits, false), gap, false);
+		System.arraycopy(solved, 0, y, 0, n);
+	}
+
+	/** Private method
+	 * @return the range of every rectangle along the x axis if @param horizontal, along the y axis
+	 * otherwise, null for a rectangle which is not limited, or null if @param limits is null
+	 */
+	private static double[][] getRanges(double[] x, double[] y, Limits limits, boolean horizontal) {
+		if(limits == null)
+			return null;
+		double[][] ranges = new double[x.length][];
+		for(int i = 0; i < x.length; i++)
+			ranges[i] = limits.getRange(i, x[i], y[i], horizontal);
+		return ranges;
+	}
+
+	/** Private method
+	 * Separate the rectangles along one axis. The scan line sweeps along the other axis.
+	 * @param position and @param size are the centers and dimensions of the rectangles along the axis
+	 * @param across and @param acrossSize are the centers and dimensions along the other axis
+	 * @param edges holds the edges of the bounds along the axis, or is null
+	 * @param ranges holds the range of every rectangle along the axis, null for a rectangle which is
+	 * not limited, or is null
+	 * @param cheaperOnly keeps only the constraints between overlapping rectangles which overlap
+	 * less along the axis than across it
+	 * @return the new centers of the rectangles along the axis
+	 */
+	private static double[] separate(double[] position, double[] size, double[] across, double[] acrossSize,
+			double[] edges, double[][] ranges, double gap, boolean cheaperOnly) {
+		int n = position.length;
+		Integer[] sorted = new Integer[n];
+		for(int i = 0; i < n; i++)
+			sorted[i] = i;
+		Comparator<Integer> byPosition = Comparator.comparingDouble((Integer i) -> position[i])
+				.thenComparingInt(i -> i);
+		Arrays.sort(sorted, byPosition);
+
+		// the scan line events: rectangles, grown by the gap, open at their low edge and close at their
+		// high edge, closing first
+		double[] eventAt = new double[2 * n];
+		Integer[] eventOrder = new Integer[2 * n];
+		for(int i = 0; i < n; i++) {
+			eventAt[2*i] = across[i] - (acrossSize[i] + gap) / 2.;
+			eventAt[2*i+1] = across[i] + (acrossSize[i] + gap) / 2.;
+			eventOrder[2*i] = 2*i;
+			eventOrder[2*i+1] = 2*i+1;
+		}
+		Arrays.sort(eventOrder, Comparator.comparingDouble((Integer e) -> eventAt[e])
+				.thenComparingInt(e -> e % 2 == 1 ? 0 : 1).thenComparingInt(e -> e));
+
+		List<int[]> constraints = new ArrayList<>();
+		TreeSet<Integer> open = new TreeSet<>(byPosition);
+		for(int e : eventOrder) {
+			int v = e / 2;
+			if(e % 2 == 0) {
+				open.add(v);
+				Integer u = open.lower(v), w = open.higher(v);
+				if(u != null)
+					addConstraint(constraints, u, v, position, size, across, acrossSize, gap, cheaperOnly);
+				if(w != null)
+					addConstraint(constraints, v, w, position, size, across, acrossSize, gap, cheaperOnly);
+			} else {
+				Integer u = open.lower(v), w = open.higher(v);
+				if(u != null && w != null)
+					addConstraint(constraints, u, w, position, size, across, acrossSize, gap, cheaperOnly);
+				open.remove(v);
+			}
+		}
+
+		// the variables are the rectangles in order, preceded and followed by the edges of the bounds and
+		// by the ends of the ranges, the low end of the range of rectangle i being variable n + 2 + 2i
+		int first = edges == null ? n : n + 2;
+		int count = ranges == null ? first : first + 2 * n;
+		int[] order = new int[count];
+		double[] desired = new double[count], weight = new double[count];
+		for(int i = 0; i < n; i++) {
+			desired[i] = position[i];
+			weight[i] = 1.;
+		}
+		int k = 0;
+		if(ranges != null) {
+			for(int i = 0; i < n; i++) {
+				int low = first + 2*i;
+				order[k++] = low;
+				double[] range = ranges[i];
+				// the ends of the range of a rectangle which is not limited are left unconstrained
+				desired[low] = range == null ? position[i] : Math.min(range[0], position[i]);
+				desired[low+1] = range == null ? position[i] : Math.max(range[1], position[i]);
+				weight[low] = weight[low+1] = BOUNDS_WEIGHT;
+				if(range != null) {
+					constraints.add(new int[] {low, i});
+					constraints.add(new int[] {i, low+1});
+				}
+			}
+		}
+		if(edges != null) {
+			order[k++] = n;
+			desired[n] = edges[0];
+			desired[n+1] = edges[1];
+			weight[n] = weight[n+1] = BOUNDS_WEIGHT * n;
+			for(int i = 0; i < n; i++) {
+				constraints.add(new int[] {n, i});
+				constraints.add(new int[] {i, n+1});
+			}
+		}
+		for(int i : sorted)
+			order[k++] = i;
+		if(edges != null)
+			order[k++] = n + 1;
+		if(ranges != null)
+			for(int i = 0; i < n; i++)
+				order[k++] = first + 2*i + 1;
+
+		int m = constraints.size();
+		int[] left = new int[m], right = new int[m];
+		double[] separation = new double[m];
+		for(int c = 0; c < m; c++) {
+			left[c] = constraints.get(c)[0];
+			right[c] = constraints.get(c)[1];
+			// the ends of a range limit the center of a rectangle, the edges of the bounds its sides
+			boolean toRange = left[c] >= first || right[c] >= first;
+			double leftSize = left[c] < n && !toRange ? size[left[c]] : 0.;
+			double rightSize = right[c] < n && !toRange ? size[right[c]] : 0.;
+			separation[c] = (leftSize + rightSize) / 2. + (left[c] < n && right[c] < n ? gap : 0.);
+		}
+		return Arrays.copyOf(satisfy(desired, weight, order, left, right, separation), n);
+	}
+
+	/** Private method
+	 * Add the constraint separating rectangle @param u from rectangle @param v to its right, unless only
+	 * the constraints between rectangles cheaper to separate along the axis are kept and they are not
+	 */
+	private static void addConstraint(List<int[]> constraints, int u, int v, double[] position, double[] size,
+			double[] across, double[] acrossSize, double gap, boolean cheaperOnly) {
+		if(cheaperOnly) {
+			double overlap = (size[u] + size[v]) / 2. + gap - Math.abs(position[v] - position[u]);
+			double overlapAcross = (acrossSize[u] + acrossSize[v]) / 2. + gap - Math.abs(across[v] - across[u]);
+			if(overlap <= 0. || overlapAcross <= 0. || overlap > overlapAcross)
+				return;
+		}
+		constraints.add(new int[] {u, v});
+	}
+
+	/** Private method
+	 * Place variables as close to their desired positions as the separation constraints allow. Every
+	 * variable starts a block of its own, in an order in which every constraint goes from an earlier
+	 * variable to a later one, and the block is merged with the block on the other side of its most
+	 * violated incoming constraint until none is violated.
+	 * @param desired and @param weight hold the desired position and the weight of every variable
+	 * @param order lists the variables in the order they are placed
+	 * @param left, @param right and @param separation define the constraints
+	 * position[right] - position[left] >= separation
+	 * @return the position of every variable
+	 */
+	private static double[] satisfy(double[] desired, double[] weight, int[] order,
+			int[] left, int[] right, double[] separation) {
+		int count = desired.length, m = left.length;
+		int[] inStart = new int[count + 1];
+		for(int c = 0; c < m; c++)
+			inStart[right[c] + 1]++;
+		for(int i = 0; i < count; i++)
+			inStart[i + 1] += inStart[i];
+		int[] incoming = new int[m];
+		int[] next = Arrays.copyOf(inStart, count);
+		for(int c = 0; c < m; c++)
+			incoming[next[right[c]]++] = c;
+
+		int[] block = new int[count];
+		double[] offset = new double[count];
+		List<List<Integer>> members = new ArrayList<>();
+		List<Heap> heaps = new ArrayList<>();
+		double[] wsum = new double[count], wposn = new double[count], blockPosition = new double[count];
+		for(int v : order) {
+			int b = members.size();
+			block[v] = b;
+			members.add(new ArrayList<>(Arrays.asList(v)));
+			wsum[b] = weight[v];
+			wposn[b] = weight[v] * desired[v];
+			blockPosition[b] = desired[v];
+			Heap heap = new Heap();
+			for(int k = inStart[v]; k < inStart[v + 1]; k++) {
+				int c = incoming[k], u = left[c];
+				heap.add(c, blockPosition[block[u]] + offset[u] + separation[c] - offset[v]);
+			}
+			heaps.add(heap);
+
+			while(!heaps.get(b).isEmpty()) {
+				Heap h = heaps.get(b);
+				int c = h.peek();
+				int u = left[c];
+				if(block[u] == b) {
+					h.poll();
+					continue;
+				}
+				// the block of u may have moved left since the key was computed, leaving the key too high
+				double key = blockPosition[block[u]] + offset[u] + separation[c] - offset[right[c]];
+				if(key < h.peekKey() - EPSILON) {
+					h.poll();
+					h.add(c, key);
+					continue;
+				}
+				double violation = key - blockPosition[b];
+				if(violation <= EPSILON)
+					break;
+				h.poll();
+
+				// merge the smaller block into the larger one, relabelling its variables
+				int l = block[u];
+				double d = offset[u] + separation[c] - offset[right[c]];
+				int into = members.get(l).size() >= members.get(b).size() ? l : b;
+				int from = into == l ? b : l;
+				double shift = into == l ? d : -d;
+				for(int x : members.get(from)) {
+					block[x] = into;
+					offset[x] += shift;
+				}
+				heaps.get(from).shift -= shift;
+				members.get(into).addAll(members.get(from));
+				members.get(from).clear();
+				wposn[into] += wposn[from] - shift * wsum[from];
+				wsum[into] += wsum[from];
+				blockPosition[into] = wposn[into] / wsum[into];
+				heaps.get(into).merge(heaps.get(from));
+				b = into;
+			}
+		}
+
+		double[] position = new double[count];
+		for(int i = 0; i < count; i++)
+			position[i] = blockPosition[block[i]] + offset[i];
+		return position;
+	}
+
+	/** Private class
+	 * A max heap of the constraints going into a block, keyed by the position they require for the block:
+	 * the position of their left variable plus their separation, minus the offset of their right variable.
+	 * The variables of the block are offset all by the same amount, so the keys are stored relative to a
+	 * shift. The blocks left of the block being placed only ever move left, when merged into a later
+	 * block, so a key can only be too high; it is recomputed once it reaches the top of the heap.
+	 */
+	private static class Heap {
+		private PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(b[1], a[1]));
+		double shift;
+
+		void add(int constraint, double key) {
+			queue.add(new double[] {constraint, key - shift});
+		}
+
+		boolean isEmpty() {
+			return queue.isEmpty();
+		}
+
+		int peek() {
+			return (int) queue.peek()[0];
+		}
+
+		double peekKey() {
+			return queue.peek()[1] + shift;
+		}
+
+		void poll() {
+			queue.poll();
+		}
+
+		/**
+		 * Move the constraints of @param other into this heap, the smaller heap being merged into the larger
+		 */
+		void merge(Heap other) {
+			PriorityQueue<double[]> smaller = other.queue;
+			double smallerShift = other.shift;
+			if(other.queue.size() > queue.size()) {
+				smaller = queue;
+				smallerShift = shift;
+				queue = other.queue;
+				shift = other.shift;
+			}
+			for(double[] entry : smaller)
+				queue.add(new double[] {entry[0], entry[1] + smallerShift - shift});
+			other.queue = new PriorityQueue<>((a, b) -> Double.compare(b[1], a[1]));
+		}
+	}
+}
@@ -212,6 +212,14 @@ public class BoundaryAnnotation {
 		this.initLocations = initLocations;
 	}
 	
+	/**
+	 * @return the list of node initialization locations corresponding to this boundary, null if
+	 * they have not been initialized
+	 */
+	protected List<Point2D> getInitializations() {
+		return initLocations;
+	}
+	
 	/**
 	 * Add a new node initialization location to the list of initializations for this boundary
 	 * @param initLocation, the Point2D node initialization location to add to the list
@@ -264,6 +272,14 @@ public class BoundaryAnnotation {
 		this.wallForce = wallForce;
 	}
 	
+	/**
+	 * Getter method for this boundary's wall force
+	 * @return the wall force corresponding to this boundary annotation, null if not yet set
+	 */
+	protected BoundaryWallForce getWallForce() {
+		return wallForce;
+	}
+	
 	/**
 	 * Setter method setting the scale factor, given the scaling factor of the wall force 
 	 * corresponding to this boundary annotation
@@ -0,0 +1,250 @@
+package edu.ucsf.rbvi.boundaryLayout.internal.layouts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.ucsf.rbvi.boundaryLayout.internal.algorithms.HaltonSequence;
+
+/**
+ * A hierarchy of ever coarser versions of a graph, used by the multilevel layout. Every level is
+ * derived from the one below by a heavy edge matching: every node is collapsed with at most one
+ * neighbor, the one it shares the heaviest edge with, into a node of the coarser level. Only nodes of
+ * the same category are ever collapsed, so every node of every level belongs to exactly one boundary.
+ * The mass of a collapsed node is the sum of the masses of its nodes, its area the sum of their areas
+ * and the weight of an edge the number of edges of the finest level it stands for.
+ *
+ * Coarsening stops once a level holds few enough nodes, or no longer shrinks enough, e.g. because the
+ * remaining nodes have no neighbor of their own category left to collapse with.
+ */
+class CoarseningHierarchy {
+	/** A level stops coarsening if it is at least this fraction of the size of the level below */
+	private static final double MIN_SHRINK = 0.85;
+
+	/**
+	 * A graph of the hierarchy. Nodes are identified by their index, edges are undirected.
+	 */
+	static final class Level {
+		final int size;
+		final int[] category;
+		final float[] mass, width, height;
+		final int[] edgeSource, edgeTarget;
+		final float[] edgeWeight;
+		// the node of the next coarser level every node is collapsed into, null for the coarsest level
+		int[] parent;
+
+		Level(int size, int[] category, float[] mass, float[] width, float[] height,
+				int[] edgeSource, int[] edgeTarget, float[] edgeWeight) {
+			this.size = size;
+			this.category = category;
+			this.mass = mass;
+			this.width = width;
+			this.height = height;
+			this.edgeSource = edgeSource;
+			this.edgeTarget = edgeTarget;
+			this.edgeWeight = edgeWeight;
+		}
+
+		int getEdgeCount() {
+			return edgeSource.length;
+		}
+	}
+
+	private final List<Level> levels = new ArrayList<>();
+
+	/**
+	 * Coarsen a graph until a level holds at most @param minSize nodes or stops shrinking
+	 * @param finest is the graph to coarsen, level 0 of the hierarchy
+	 */
+	CoarseningHierarchy(Level finest, int minSize) {
+		levels.add(finest);
+		Level level = finest;
+		while(level.size > minSize) {
+			Level coarse = coarsen(level);
+			if(coarse.size > MIN_SHRINK * level.size) {
+				level.parent = null;
+				break;
+			}
+			levels.add(coarse);
+			level = coarse;
+		}
+	}
+
+	/**
+	 * @return the number of levels, including the finest one
+	 */
+	int getLevelCount() {
+		return levels.size();
+	}
+
+	/**
+	 * @return the graph of @param level, 0 being the finest
+	 */
+	Level getLevel(int level) {
+		return levels.get(level);
+	}
+
+	/**
+	 * Compute the locations of the nodes of level + 1 as the centers of mass of their nodes.
+	 * @param x and @param y hold the locations of the nodes of @param level
+	 * @param coarseX and @param coarseY receive the locations of the nodes of the coarser level
+	 */
+	void restrict(int level, float[] x, float[] y, float[] coarseX, float[] coarseY) {
+		Level fine = levels.get(level), coarse = levels.get(level + 1);
+		Arrays.fill(coarseX, 0, coarse.size, 0f);
+		Arrays.fill(coarseY, 0, coarse.size, 0f);
+		for(int i = 0; i < fine.size; i++) {
+			int c = fine.parent[i];
+			coarseX[c] += fine.mass[i] * x[i] / coarse.mass[c];
+			coarseY[c] += fine.mass[i] * y[i] / coarse.mass[c];
+		}
+	}
+
+	/**
+	 * Place the nodes of level - 1 at the location of the node they were collapsed into. The two
+	 * nodes collapsed into a single one are set apart by a quarter of its size, in a direction taken
+	 * from a low-discrepancy sequence so that the pairs do not all line up.
+	 * @param coarseX and @param coarseY hold the locations of the nodes of @param level
+	 * @param x and @param y receive the locations of the nodes of the finer level
+	 */
+	void prolong(int level, float[] coarseX, float[] coarseY, float[] x, float[] y) {
+		Level fine = levels.get(level - 1), coarse = levels.get(level);
+		int[] first = new int[coarse.size];
+		Arrays.fill(first, -1);
+		for(int i = 0; i < fine.size; i++) {
+			int c = fine.parent[i];
+			x[i] = coarseX[c];
+			y[i] = coarseY[c];
+			if(first[c] < 0) {
+				first[c] = i;
+			} else {
+				double angle = 2 * Math.PI * HaltonSequence.radicalInverse(c + 1, 2);
+				double dx = Math.cos(angle) * coarse.width[c] / 4, dy = Math.sin(angle) * coarse.height[c] / 4;
+				x[first[c]] += (float) dx;
+				y[first[c]] += (float) dy;
+				x[i] -= (float) dx;
+				y[i] -= (float) dy;
+			}
+		}
+	}
+
+	/** Private method
+	 * Collapse the nodes of @param fine by a heavy edge matching, set its parents and
+	 * @return the coarser level
+	 */
+	private static Level coarsen(Level fine) {
+		int n = fine.size;
+
+		// adjacency of every node, as compressed rows
+		int[] start = new int[n + 1];
+		for(int e = 0; e < fine.getEdgeCount(); e++) {
+			start[fine.edgeSource[e] + 1]++;
+			start[fine.edgeTarget[e] + 1]++;
+		}
+		for(int i = 0; i < n; i++)
+			start[i + 1] += start[i];
+		int[] next = Arrays.copyOf(start, n);
+		int[] neighbor = new int[start[n]];
+		float[] weight = new float[start[n]];
+		for(int e = 0; e < fine.getEdgeCount(); e++) {
+			int u = fine.edgeSource[e], v = fine.edgeTarget[e];
+			neighbor[next[u]] = v;
+			weight[next[u]++] = fine.edgeWeight[e];
+			neighbor[next[v]] = u;
+			weight[next[v]++] = fine.edgeWeight[e];
+		}
+
+		// match the nodes of lowest degree first, they have the fewest chances to find a partner
+		int maxDegree = 0;
+		for(int i = 0; i < n; i++)
+			maxDegree = Math.max(maxDegree, start[i + 1] - start[i]);
+		int[] degreeStart = new int[maxDegree + 2];
+		for(int i = 0; i < n; i++)
+			degreeStart[start[i + 1] - start[i] + 1]++;
+		for(int d = 0; d <= maxDegree; d++)
+			degreeStart[d + 1] += degreeStart[d];
+		int[] order = new int[n];
+		for(int i = 0; i < n; i++)
+			order[degreeStart[start[i + 1] - start[i]]++] = i;
+		int[] match = new int[n];
+		Arrays.fill(match, -1);
+		for(int u : order) {
+			if(match[u] >= 0)
+				continue;
+			int best = -1;
+			for(int k = start[u]; k < start[u + 1]; k++) {
+				int v = neighbor[k];
+				if(v == u || match[v] >= 0 || fine.category[v] != fine.category[u])
+					continue;
+				if(best < 0 || weight[k] > weight[best] ||
+						(weight[k] == weight[best] && fine.mass[v] < fine.mass[neighbor[best]]))
+					best = k;
+			}
+			if(best >= 0) {
+				match[u] = neighbor[best];
+				match[neighbor[best]] = u;
+			}
+		}
+
+		// number the coarse nodes in the order of their first node
+		fine.parent = new int[n];
+		Arrays.fill(fine.parent, -1);
+		int size = 0;
+		for(int i = 0; i < n; i++) {
+			if(fine.parent[i] >= 0)
+				continue;
+			fine.parent[i] = size;
+			if(match[i] >= 0)
+				fine.parent[match[i]] = size;
+			size++;
+		}
+
+		int[] category = new int[size];
+		float[] mass = new float[size], width = new float[size], height = new float[size];
+		for(int i = 0; i < n; i++) {
+			int c = fine.parent[i];
+			category[c] = fine.category[i];
+			mass[c] += fine.mass[i];
+			width[c] += fine.width[i] * fine.width[i];
+			height[c] += fine.height[i] * fine.height[i];
+		}
+		for(int c = 0; c < size; c++) {
+			width[c] = (float) Math.sqrt(width[c]);
+			height[c] = (float) Math.sqrt(height[c]);
+		}
+
+		// merge the edges between the same coarse nodes, dropping those within a coarse node: every
+		// coarse node a collects the edges to the coarse nodes b > a from the adjacency of its nodes
+		int[] edgeSource = new int[fine.getEdgeCount()], edgeTarget = new int[fine.getEdgeCount()];
+		float[] edgeWeight = new float[fine.getEdgeCount()];
+		int[] marked = new int[size], slot = new int[size];
+		Arrays.fill(marked, -1);
+		int edgeCount = 0;
+		for(int i = 0; i < n; i++) {
+			if(match[i] >= 0 && match[i] < i)
+				continue;
+			int a = fine.parent[i];
+			for(int member = 0; member < 2; member++) {
+				int u = member == 0 ? i : match[i];
+				if(u < 0)
+					break;
+				for(int k = start[u]; k < start[u + 1]; k++) {
+					int b = fine.parent[neighbor[k]];
+					if(b <= a)
+						continue;
+					if(marked[b] != a) {
+						marked[b] = a;
+						slot[b] = edgeCount;
+						edgeSource[edgeCount] = a;
+						edgeTarget[edgeCount] = b;
+						edgeWeight[edgeCount++] = weight[k];
+					} else {
+						edgeWeight[slot[b]] += weight[k];
+					}
+				}
+			}
+		}
+		return new Level(size, category, mass, width, height, Arrays.copyOf(edgeSource, edgeCount), 
+				Arrays.copyOf(edgeTarget, edgeCount), Arrays.copyOf(edgeWeight, edgeCount));
+	}
+}
@@ -15,9 +15,14 @@ import org.cytoscape.view.model.View;
 import org.cytoscape.work.TaskIterator;
 import org.cytoscape.work.undo.UndoSupport;
 
+import prefuse.util.force.AdaptiveCoolingSchedule;
+import prefuse.util.force.CoolingSchedule;
 import prefuse.util.force.EulerIntegrator;
+import prefuse.util.force.ExponentialCoolingSchedule;
 import prefuse.util.force.Integrator;
+import prefuse.util.force.LinearCoolingSchedule;
 import prefuse.util.force.RungeKuttaIntegrator;
+import prefuse.util.force.VerletIntegrator;
 
 /**
  * Initializes the force-directed capabilities of boundary layout
@@ -28,10 +33,8 @@ public class ForceDirectedLayout extends AbstractLayoutAlgorithm {
 	static final String ALGORITHM_DISPLAY_NAME = "Boundary Layout";
 	final CyServiceRegistrar registrar;
 
-	private Integrators integrator = Integrators.RUNGEKUTTA;
-
 	public enum Integrators {
-		RUNGEKUTTA("Runge-Kutta"), EULER("Euler");
+		RUNGEKUTTA("Runge-Kutta"), EULER("Euler"), VERLET("Velocity Verlet");
 
 		private String name;
 
@@ -47,11 +50,37 @@ public class ForceDirectedLayout extends AbstractLayoutAlgorithm {
 		public Integrator getNewIntegrator() {
 			if (this == EULER)
 				return new EulerIntegrator();
+			else if (this == VERLET)
+				return new VerletIntegrator();
 			else
 				return new RungeKuttaIntegrator();
 		}
 	}
 
+	public enum CoolingSchedules {
+		EXPONENTIAL("Exponential"), LINEAR("Linear"), ADAPTIVE("Adaptive");
+
+		private String name;
+
+		private CoolingSchedules(String str) {
+			name = str;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+
+		public CoolingSchedule getNewSchedule(long initialTimestep, long finalTimestep) {
+			if (this == LINEAR)
+				return new LinearCoolingSchedule(initialTimestep, finalTimestep);
+			else if (this == ADAPTIVE)
+				return new AdaptiveCoolingSchedule(initialTimestep, finalTimestep);
+			else
+				return new ExponentialCoolingSchedule(initialTimestep, finalTimestep);
+		}
+	}
+
 	/**
 	 * Constructs a ForceDirectedLayout given the registrar
 	 * @param registrar is the registrar of this session
@@ -70,6 +99,9 @@ public class ForceDirectedLayout extends AbstractLayoutAlgorithm {
 	public TaskIterator createTaskIterator(CyNetworkView networkView, Object context, 
 			Set<View<CyNode>> nodesToLayOut, String attrName) {
 		ForceDirectedLayoutContext settings = (ForceDirectedLayoutContext) context;
+		Integrators integrator = settings.integrator.getSelectedValue();
+		if (integrator == null)
+			integrator = Integrators.RUNGEKUTTA;
 		ForceDirectedLayoutTask newTask = new ForceDirectedLayoutTask(toString(), networkView, nodesToLayOut,
 				settings, attrName, integrator, registrar, undoSupport);
 		return new TaskIterator(newTask);
@@ -45,9 +45,156 @@ public class ForceDirectedLayoutContext implements TunableValidator, SetCurrentN
 	         groups={"Layout Parameters"},gravity=12.0,	
 			tooltip="Apply a force to minimize node overlap")
 	public boolean avoidOverlap = true;
+
+	@Tunable(description="Resolve overlaps with a collision force", gravity=12.05, groups={"Layout Parameters"},
+			tooltip="Push overlapping nodes apart with a short-range force over a spatial hash, letting the "+
+			"repulsion between nodes only spread them", dependsOn="avoidOverlap=true")
+	public boolean collisionForce = false;
+
+	@Tunable(description="Remove overlaps after the layout", gravity=12.15, groups={"Layout Parameters"},
+			tooltip="Remove the overlaps between the nodes of every boundary in a single pass once the layout is "+
+			"done, moving them as little as possible, instead of resolving them during the simulation")
+	public boolean removeOverlaps = false;
 		
+	@Tunable(description="Incremental layout", gravity=4.1, groups={"Layout Parameters"},
+			tooltip="Keep the nodes already within their boundary where they are and only place new or misplaced "+
+			"nodes, running a shorter and cooler layout")
+	public boolean incrementalLayout = false;
+
+	@Tunable(description="Incremental iteration fraction", gravity=4.2, groups={"Layout Parameters"},
+			tooltip="Fraction of the number of iterations run by an incremental layout",
+			dependsOn="incrementalLayout=true")
+	public double incrementalIterations = 0.2;
+
+	@Tunable(description="Multilevel layout", gravity=4.3, groups={"Layout Parameters"},
+			tooltip="Lay out ever finer coarsenings of the network, collapsing connected nodes of the same category, "+
+			"before refining the nodes themselves; much faster on large networks")
+	public boolean multilevel = false;
+
+	@Tunable(description="Refinement iterations per level", gravity=4.4, groups={"Layout Parameters"},
+			tooltip="Number of iterations refining every level of a multilevel layout, and the nodes themselves",
+			dependsOn="multilevel=true")
+	public int multilevelRefinement = 30;
+
+	@Tunable(description="Fold leaf nodes", gravity=4.5, groups={"Layout Parameters"},
+			tooltip="Leave the nodes with a single neighbor out of the simulation and place them around "+
+			"that neighbor afterwards; much faster on networks with many leaves")
+	public boolean foldLeaves = false;
+
+	@Tunable(description="Lay out components separately", gravity=4.6, groups={"Layout Parameters"},
+			tooltip="Lay out the connected components of every category on their own, in parallel, and pack them "+
+			"into the free area of their boundary before refining the whole network; takes precedence over "+
+			"the multilevel layout")
+	public boolean layoutComponents = false;
+
+	@Tunable(description="Refinement iterations after packing", gravity=4.7, groups={"Layout Parameters"},
+			tooltip="Number of iterations refining the network once its components are packed",
+			dependsOn="layoutComponents=true")
+	public int componentRefinement = 30;
+
+	@Tunable(description="Let settled nodes sleep", gravity=10.5, groups={"Layout Parameters"},
+			tooltip="Stop moving the nodes that have settled, and computing the forces acting on them, until a "+
+			"neighbor moves, a boundary projects them or the forces acting on them grow")
+	public boolean sleepParticles = false;
+
+	@Tunable(description="Sleep displacement", gravity=10.6, groups={"Layout Parameters"},
+			tooltip="A node moving less than this distance per iteration, and pushed by forces that would move it "+
+			"less than this distance, is at rest", dependsOn="sleepParticles=true")
+	public double sleepDisplacement = 0.5;
+
+	@Tunable(description="Steps at rest before sleeping", gravity=10.7, groups={"Layout Parameters"},
+			tooltip="Number of consecutive iterations a node must be at rest before it sleeps; the forces acting "+
+			"on sleeping nodes are checked as often", dependsOn="sleepParticles=true")
+	public int sleepSteps = 10;
+
+	@Tunable(description="Spread nodes within boundaries", gravity=12.1, groups={"Layout Parameters"},
+			tooltip="Start the nodes of every boundary evenly spread over its free area instead of piled up at its center")
+	public boolean seedNodes = true;
+
 	@Tunable(description="speed limit", gravity=9.0, groups={"Layout Parameters"})
 	public float speedLimit = 1f;
+
+	@Tunable(description="Number of threads", gravity=10.0, groups={"Layout Parameters"},
+			tooltip="Number of threads used to compute the forces acting on the nodes")
+	public int numThreads = Runtime.getRuntime().availableProcessors();
+
+	@Tunable(description="Integration algorithm", gravity=8.0, groups={"Layout Parameters"},
+			tooltip="Runge-Kutta is the most accurate; Velocity Verlet evaluates the forces once per step "+
+			"instead of four times and is much faster on large networks")
+	public ListSingleSelection<ForceDirectedLayout.Integrators> integrator =
+			new ListSingleSelection<ForceDirectedLayout.Integrators>(ForceDirectedLayout.Integrators.values());
+
+	@Tunable(description="Cooling schedule", gravity=8.1, groups={"Layout Parameters"},
+			tooltip="How the timestep is lowered over the course of the layout, across all of its phases")
+	public ListSingleSelection<ForceDirectedLayout.CoolingSchedules> coolingSchedule =
+			new ListSingleSelection<ForceDirectedLayout.CoolingSchedules>(ForceDirectedLayout.CoolingSchedules.values());
+
+	@Tunable(description="Initial timestep", gravity=8.2, groups={"Layout Parameters"},
+			tooltip="The timestep at the start of the layout")
+	public long initialTimestep = 1000L;
+
+	@Tunable(description="Final timestep", gravity=8.3, groups={"Layout Parameters"},
+			tooltip="The timestep at the end of the layout")
+	public long finalTimestep = 50L;
+
+	@Tunable(description="Repulsion update interval", gravity=10.25, groups={"Layout Parameters"},
+			tooltip="Number of iterations the repulsion of distant nodes is reused for before it is computed "+
+			"again; the repulsion of nearby nodes, springs and boundary walls are computed every time")
+	public int repulsionInterval = 1;
+
+	@Tunable(description="Node reordering interval", gravity=10.26, groups={"Layout Parameters"},
+			tooltip="Number of iterations between two sorts of the nodes in memory by their location, which "+
+			"speeds up the repulsion and springs of large networks; 0 keeps the nodes in their original order")
+	public int reorderInterval = 0;
+
+	@Tunable(description="Partition by boundary", gravity=10.3, groups={"Layout Parameters"},
+			tooltip="Simulate the nodes of every boundary separately and in parallel, "+
+			"coupled only by the edges between boundaries")
+	public boolean partitionByBoundary = false;
+
+	@Tunable(description="Steps between partition exchanges", gravity=10.4, groups={"Layout Parameters"},
+			tooltip="Number of steps each boundary takes before the forces of the edges between boundaries are updated",
+			dependsOn="partitionByBoundary=true")
+	public int partitionSyncSteps = 1;
+
+	@Tunable(description="Reuse quadtree within a step", gravity=10.1, groups={"Layout Parameters"},
+			tooltip="Refit the repulsion quadtree for the intermediate Runge-Kutta stages instead of rebuilding it")
+	public boolean reuseQuadTree = false;
+
+	@Tunable(description="Quadtree rebuild distance", gravity=10.2, groups={"Layout Parameters"},
+			tooltip="A reused quadtree is rebuilt once any node has moved further than this distance",
+			dependsOn="reuseQuadTree=true")
+	public double quadTreeRebuildDistance = 5.0;
+	
+	@Tunable(description="Stop phases early on convergence", gravity=11.0, groups={"Convergence"},
+			tooltip="End each layout phase once the nodes have stopped moving")
+	public boolean stopOnConvergence = false;
+
+	@Tunable(description="Kinetic energy tolerance", gravity=11.1, groups={"Convergence"},
+			tooltip="Mean kinetic energy per node below which the layout is considered at rest",
+			dependsOn="stopOnConvergence=true")
+	public double convergenceEnergy = 1e-3;
+
+	@Tunable(description="Displacement tolerance", gravity=11.2, groups={"Convergence"},
+			tooltip="Largest distance any node may move within a step of a layout at rest",
+			dependsOn="stopOnConvergence=true")
+	public double convergenceDisplacement = 0.5;
+
+	@Tunable(description="Projection tolerance", gravity=11.3, groups={"Convergence"},
+			tooltip="Number of nodes that may be projected back into their boundary while the layout is at rest",
+			dependsOn="stopOnConvergence=true")
+	public int convergenceProjections = 0;
+
+	@Tunable(description="Steps at rest", gravity=11.4, groups={"Convergence"},
+			tooltip="Number of consecutive steps at rest after which a phase ends",
+			dependsOn="stopOnConvergence=true")
+	public int convergenceSteps = 10;
+
+	@Tunable(description="Energy plateau tolerance", gravity=11.5, groups={"Convergence"},
+			tooltip="Relative change of the mean kinetic energy between two windows of steps "+
+			"below which a phase ends even if the nodes keep oscillating in place",
+			dependsOn="stopOnConvergence=true")
+	public double convergencePlateau = 0.02;
 	
 	@Tunable(description="Strength of boundaries", gravity=13.0, groups = {"Boundary Parameters"})
 	public float gravConst = 50f;
@@ -99,11 +246,44 @@ public class ForceDirectedLayoutContext implements TunableValidator, SetCurrentN
 				errMsg.append("The thickness of the outer network boundary must be > 1.0; current value = " + outerBoundsThickness);
 			if(wallScale < 1. || wallScale > 10.)
 				errMsg.append("The wall scale factor must be > 1.0 and < 10.0; current value = " + wallScale);
+			if (!isPositive(numThreads))
+				errMsg.append("Number of threads must be > 0; current value = " + numThreads);
+			if (finalTimestep <= 0 || initialTimestep < finalTimestep)
+				errMsg.append("Timesteps must be > 0 and the initial timestep must be >= the final one");
+			if (incrementalIterations <= 0. || incrementalIterations > 1.)
+				errMsg.append("Incremental iteration fraction must be > 0 and <= 1; current value = " + incrementalIterations);
+			if (!isPositive(multilevelRefinement))
+				errMsg.append("Refinement iterations per level must be > 0; current value = " + multilevelRefinement);
+			if (!isPositive(componentRefinement))
+				errMsg.append("Refinement iterations after packing must be > 0; current value = " + componentRefinement);
+			if (sleepDisplacement < 0. || !isPositive(sleepSteps))
+				errMsg.append("Sleep displacement must be >= 0 and steps at rest before sleeping > 0");
+			if (!isPositive(repulsionInterval))
+				errMsg.append("Repulsion update interval must be > 0; current value = " + repulsionInterval);
+			if (reorderInterval < 0)
+				errMsg.append("Node reordering interval must be >= 0; current value = " + reorderInterval);
+			if (!isPositive(partitionSyncSteps))
+				errMsg.append("Steps between partition exchanges must be > 0; current value = " + partitionSyncSteps);
+			if (!isPositive(quadTreeRebuildDistance))
+				errMsg.append("Quadtree rebuild distance must be > 0; current value = " + quadTreeRebuildDistance);
+			if (convergenceEnergy < 0. || convergenceDisplacement < 0. || convergenceProjections < 0 || convergencePlateau < 0.)
+				errMsg.append("Convergence tolerances must be >= 0");
+			if (!isPositive(convergenceSteps))
+				errMsg.append("Steps at rest must be > 0; current value = " + convergenceSteps);
 			
 		} catch (IOException e) {}
 		return isPositive(numIterations) && isPositive(defaultSpringCoefficient)
 				&& isPositive(defaultSpringLength) && isPositive(defaultNodeMass) && outerBoundsThickness > 1.
-				&& (wallScale >= 1. && wallScale <= 10.)
+				&& (wallScale >= 1. && wallScale <= 10.) && isPositive(numThreads)
+				&& finalTimestep > 0 && initialTimestep >= finalTimestep
+				&& incrementalIterations > 0. && incrementalIterations <= 1.
+				&& isPositive(multilevelRefinement) && isPositive(componentRefinement)
+				&& sleepDisplacement >= 0. && isPositive(sleepSteps)
+				&& isPositive(repulsionInterval) && reorderInterval >= 0
+				&& isPositive(partitionSyncSteps) && isPositive(quadTreeRebuildDistance)
+				&& convergenceEnergy >= 0. && convergenceDisplacement >= 0. && convergenceProjections >= 0
+				&& convergencePlateau >= 0.
+				&& isPositive(convergenceSteps)
 				? ValidationState.OK : ValidationState.INVALID;
 	}
 
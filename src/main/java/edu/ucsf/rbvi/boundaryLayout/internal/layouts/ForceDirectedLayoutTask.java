@@ -1,11 +1,17 @@
 package edu.ucsf.rbvi.boundaryLayout.internal.layouts;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import  java.awt.geom.Point2D;
@@ -29,11 +35,21 @@ import org.cytoscape.work.TaskMonitor;
 import org.cytoscape.work.undo.UndoSupport;
 
 import edu.ucsf.rbvi.boundaryLayout.internal.algorithms.BoundaryContainsAlgorithm;
+import edu.ucsf.rbvi.boundaryLayout.internal.algorithms.BoundaryIndex;
+import edu.ucsf.rbvi.boundaryLayout.internal.algorithms.HaltonSequence;
+import edu.ucsf.rbvi.boundaryLayout.internal.algorithms.OverlapRemoval;
 import prefuse.util.force.BoundaryWallForce;
+import prefuse.util.force.CategoryTable;
+import prefuse.util.force.CollisionForce;
+import prefuse.util.force.ConvergenceMonitor;
+import prefuse.util.force.CoolingSchedule;
 import prefuse.util.force.EllipticalWallForce;
 import prefuse.util.force.ForceItem;
 import prefuse.util.force.ForceSimulator;
 import prefuse.util.force.NBodyForce;
+import prefuse.util.force.ParallelNBodyForce;
+import prefuse.util.force.ParticleStore;
+import prefuse.util.force.PartitionedSimulator;
 import prefuse.util.force.RectangularWallForce;
 import prefuse.util.force.SpringForce;
 
@@ -51,9 +67,52 @@ public class ForceDirectedLayoutTask extends AbstractLayoutTask {
 	final CyNetworkView netView;
 	private Map<Object, BoundaryAnnotation> boundaries;
 	private static final String OUTER_UNION_KEY = "Default Outer Boundary";
+	// free areas of a boundary seeding its nodes, and the fraction of the largest area they must reach
+	private static final int SEED_REGIONS = 4;
+	private static final double SEED_AREA_FRACTION = 0.25;
+	// nodes are seeded a cell of SEED_SPACING times their size apart, trying up to SEED_ATTEMPTS points each
+	private static final double SEED_SPACING = 2.;
+	private static final int SEED_ATTEMPTS = 64;
+	// the multilevel layout coarsens the network until a level has at most this many nodes
+	private static final int MULTILEVEL_MIN_NODES = 100;
+	// folded leaves are placed this many times their size apart around their neighbor
+	private static final double LEAF_SPACING = 1.2;
+	// the Barnes-Hut theta of the n-body force when a collision force or the overlap removal resolves the overlaps
+	private static final float LOOSE_THETA = 1.0f;
+	// the space the overlap removal leaves between two nodes
+	private static final double OVERLAP_GAP = 2.;
+	// the most passes the overlap removal makes, and the precision of the range a node is limited to
+	private static final int OVERLAP_PASSES = 50;
+	private static final double RANGE_TOLERANCE = 0.5;
 
 	private Rectangle2D unionOfBoundaries;
 
+	// the number of iterations of this run, shortened for an incremental layout
+	private int iterations;
+
+	// nodes with a single neighbor left out of the simulation, mapped to that neighbor, and the
+	// folded leaves of every neighbor together with the radius and angular step of the ring they are placed on
+	private Map<CyNode, CyNode> foldedLeaves = new HashMap<>();
+	private Map<CyNode, List<CyNode>> leavesOf = new LinkedHashMap<>();
+	private Map<CyNode, double[]> leafRings = new HashMap<>();
+
+	// the simulators stepped by the layout, one per boundary category when partitioned
+	private List<ForceSimulator> simulators;
+	private PartitionedSimulator partitioned;
+
+	// compiled boundaries used to project the nodes back into them
+	private ProjectionEngine projectionEngine;
+	private int[] inProjections, outProjections, projectionCandidates;
+
+	// spatial index over the bounding boxes of the boundaries, ids are positions in indexedBoundaries
+	private BoundaryIndex boundaryIndex;
+	private BoundaryAnnotation[] indexedBoundaries;
+	private int[] overlapping;
+
+	// the categories of the nodes interned to ids, the boundaries come first and are indexed by their id
+	private CategoryTable categories;
+	private BoundaryAnnotation[] categoryBoundaries;
+
 	/**
 	 * Construct a force directed layout task, holding the information relevant to the 
 	 * network view including: nodes, edges, boundaries.
@@ -112,18 +171,43 @@ public class ForceDirectedLayoutTask extends AbstractLayoutTask {
 			context.gravConst *= -1;
 
 		//initialize simulation and add the various forces
-		ForceSimulator m_fsim = new ForceSimulator();
-		m_fsim.speedLimit = context.speedLimit;
-		m_fsim.addForce(new SpringForce());
+		simulators = new ArrayList<>();
+		partitioned = null;
+		ForceSimulator[] partitions = new ForceSimulator[0];
+		if(context.partitionByBoundary && boundaries != null && !boundaries.isEmpty()) {
+			// every category steps on its own simulator, the partitions run concurrently
+			partitioned = new PartitionedSimulator();
+			partitioned.setThreadCount(context.numThreads);
+			partitioned.setStepsPerRound(context.partitionSyncSteps);
+		} else {
+			ForceSimulator m_fsim = newSimulator();
+			m_fsim.setThreadCount(context.numThreads);
+			simulators.add(m_fsim);
+		}
 		forceItems.clear();
+		projectionEngine = null;
 
 		//initialize initial node locations
 		if (boundaries != null) {
 			this.unionOfBoundaries = getUnionofBoundaries(boundaries.values());
 			this.initializeOuterBoundary();
+			indexBoundaries();
 			for(BoundaryAnnotation boundary : boundaries.values()) 
 				initNodeLocations(boundary);
 		}
+		categories = new CategoryTable();
+		categoryBoundaries = new BoundaryAnnotation[boundaries.size()];
+		for(Map.Entry<Object, BoundaryAnnotation> entry : boundaries.entrySet())
+			categoryBoundaries[categories.intern(entry.getKey())] = entry.getValue();
+		int outerId = categories.getId(OUTER_UNION_KEY);
+		List<List<ForceItem>> members = new ArrayList<>();
+		for(int id = 0; id < categoryBoundaries.length; id++)
+			members.add(new ArrayList<>());
+		foldedLeaves.clear();
+		leavesOf.clear();
+		leafRings.clear();
+		if(context.foldLeaves)
+			findLeaves();
 
 		// initialize node locations and properties
 		for (View<CyNode> nodeView : nodeViewList) {
@@ -133,36 +217,71 @@ public class ForceDirectedLayoutTask extends AbstractLayoutTask {
 				forceItems.put(nodeView.getModel(), fitem);
 			}
 
-			fitem.mass = (float) context.defaultNodeMass;
+			fitem.setMass((float) context.defaultNodeMass);
 
-			Object group = null;
-			if(chosenCategory != null)
-				group = netView.getModel().getRow(nodeView.getModel()).getRaw(chosenCategory);
+			Object group = getGroup(nodeView.getModel());
 
 			double width = nodeView.getVisualProperty(BasicVisualLexicon.NODE_WIDTH);
 			double height = nodeView.getVisualProperty(BasicVisualLexicon.NODE_HEIGHT);
-			fitem.dimensions[0] = (float) width;
-			fitem.dimensions[1] = (float) height;
+			fitem.setDimensions((float) width, (float) height);
 			fitem.category = group;
+			int id = categories.getId(group);
+			// nodes without a boundary of their own belong to the outer boundary
+			if(id == CategoryTable.NONE || id >= categoryBoundaries.length) {
+				if(outerId != CategoryTable.NONE) {
+					fitem.category = OUTER_UNION_KEY;
+					id = outerId;
+				} else {
+					id = categories.intern(group);
+				}
+			}
+			fitem.setCategoryId(id);
+			// folded leaves are placed once the layout is done
+			if(foldedLeaves.containsKey(nodeView.getModel()))
+				continue;
 
-			if(unionOfBoundaries != null) {
-				if(boundaries.containsKey(fitem.category)) {
-					Rectangle2D intersectionUnion = boundaries.get(fitem.category).getUnionOfIntersections();
-					fitem.location[0] = (float) intersectionUnion.getCenterX();
-					fitem.location[1] = (float) intersectionUnion.getCenterY();
+			// an incremental layout keeps the nodes that already lie within their boundary in place
+			double x = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
+			double y = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION);
+			boolean keep = context.incrementalLayout && (categoryBoundaries.length == 0 || 
+					getProjectionEngine().admits(id, x, y, width, height, projectionCandidates));
+			if(id < categoryBoundaries.length && !keep)
+				members.get(id).add(fitem);
+
+			if(keep) {
+				fitem.setLocation((float) x, (float) y);
+			} else if(unionOfBoundaries != null) {
+				if(id < categoryBoundaries.length) {
+					Rectangle2D intersectionUnion = categoryBoundaries[id].getUnionOfIntersections();
+					fitem.setLocation((float) intersectionUnion.getCenterX(), (float) intersectionUnion.getCenterY());
 				} else {
-					fitem.location[0] = (float) unionOfBoundaries.getCenterX();
-					fitem.location[1] = (float) unionOfBoundaries.getCenterY();
+					fitem.setLocation((float) unionOfBoundaries.getCenterX(), (float) unionOfBoundaries.getCenterY());
 				}
 			} else {
-				fitem.location[0] = 0f;
-				fitem.location[1] = 0f;
+				fitem.setLocation(0f, 0f);
 			}
 
-			m_fsim.addItem(fitem);
+			if(partitioned != null) {
+				if(id >= partitions.length)
+					partitions = Arrays.copyOf(partitions, categories.size());
+				ForceSimulator partition = partitions[id];
+				if(partition == null) {
+					partition = newSimulator();
+					partitions[id] = partition;
+					partitioned.addPartition(partition);
+					simulators.add(partition);
+				}
+				partition.addItem(fitem);
+			} else {
+				simulators.get(0).addItem(fitem);
+			}
 		}
 
 
+		foldLeaves();
+		if(context.seedNodes && unionOfBoundaries != null)
+			seedNodeLocations(members);
+
 		//initialize edges
 		for (View<CyEdge> edgeView : edgeViewList) {
 			CyEdge edge = edgeView.getModel();
@@ -170,52 +289,65 @@ public class ForceDirectedLayoutTask extends AbstractLayoutTask {
 			ForceItem f1 = forceItems.get(n1); 
 			CyNode n2 = edge.getTarget();
 			ForceItem f2 = forceItems.get(n2); 
-			if ( f1 == null || f2 == null )
+			if ( f1 == null || f2 == null || foldedLeaves.containsKey(n1) || foldedLeaves.containsKey(n2) )
 				continue;
-			m_fsim.addSpring(f1, f2, (float) context.defaultSpringCoefficient, (float) context.defaultSpringLength); 
+			if(partitioned != null)
+				partitioned.addSpring(f1, f2, (float) context.defaultSpringCoefficient, (float) context.defaultSpringLength);
+			else
+				simulators.get(0).addSpring(f1, f2, (float) context.defaultSpringCoefficient, (float) context.defaultSpringLength); 
 		}
 
-		final int checkCenter = (context.numIterations / 25) + 1;
-		// perform layout and check center at intervals
-		long timestep = 1000L;
-		m_fsim.speedLimit = 2f;
-		for (int i = 0; i < context.numIterations / 3 && !cancelled; i++) {
-			timestep *= (1.0 - i/(double)context.numIterations);
-			long step = timestep + 50;
-			if(i % checkCenter == 0) 
-				checkCenter(m_fsim);
-			m_fsim.runSimulator(step);
-			taskMonitor.setProgress((int)(((double)i/(double)context.numIterations)*90.+5));
-		}
+		// a multilevel layout places the nodes by laying out ever finer coarsenings of the network first,
+		// a component layout by laying out and packing the connected components of every category
+		boolean refine = false;
+		if(context.layoutComponents && !context.incrementalLayout)
+			refine = layoutComponents(taskMonitor);
+		else if(context.multilevel && !context.incrementalLayout)
+			refine = layoutCoarseLevels(taskMonitor);
+
+		iterations = context.numIterations;
+		if(refine)
+			iterations = Math.max(3, context.layoutComponents ? context.componentRefinement : context.multilevelRefinement);
+		else if(context.incrementalLayout)
+			iterations = Math.max(3, (int) Math.round(context.numIterations * context.incrementalIterations));
+		final int checkCenter = (iterations / 25) + 1;
+		for(ForceSimulator m_fsim : simulators)
+			m_fsim.setConvergenceMonitor(newConvergenceMonitor(checkCenter));
 
-		checkCenter(m_fsim);
-		if(boundaries != null && !boundaries.isEmpty()) 
+		// perform layout and check center at intervals; an incremental or refined layout keeps its 
+		// nodes within their boundaries from the start, so it skips this phase. The phases share
+		// a single schedule, every phase picking up the timestep where the previous one left off
+		setSpeedLimit(2f);
+		int boundedFrom = context.incrementalLayout || refine ? 0 : iterations / 3;
+		CoolingSchedule schedule = getCoolingSchedule(iterations);
+		if(boundedFrom > 0)
+			runPhase(taskMonitor, schedule, "Phase 1 of 3", 0, boundedFrom, checkCenter);
+
+		checkCenters();
+		if(boundaries != null && !boundaries.isEmpty()) {
 			for(BoundaryAnnotation boundary : boundaries.values()) 
-				addAnnotationForce(m_fsim, boundary);
+				addAnnotationForce(boundary);
+			for(ForceSimulator m_fsim : simulators)
+				routeAnnotationForces(m_fsim);
+		}
 
 		// perform layout at desired speedlimit with boundary forces
-		m_fsim.speedLimit = context.speedLimit;
-		for (int i = context.numIterations / 3; i < 2 * context.numIterations / 3 && !cancelled; i++) {
-			timestep *= (1.0 - i/(double)context.numIterations);
-			long step = timestep + 50;
-			if(i % checkCenter == 0) 
-				checkCenter(m_fsim);
-			m_fsim.runSimulator(step);
-			taskMonitor.setProgress((int)(((double)i/(double)context.numIterations)*90.+5));
-		}
+		setSpeedLimit(context.speedLimit);
+		runPhase(taskMonitor, schedule, "Phase 2 of 3", boundedFrom, 2 * iterations / 3, checkCenter);
 
 		// perform layout while looking at NBodyForce interactions
-		checkCenter(m_fsim);
-		m_fsim.addForce(new NBodyForce(context.avoidOverlap));
-		for(int i = 2 * context.numIterations / 3; i < context.numIterations && !cancelled; i++) {
-			timestep *= (1.0 - i/(double)context.numIterations);
-			long step = timestep + 50;
-			if(i % checkCenter == 0) 
-				checkCenter(m_fsim);
-			m_fsim.runSimulator(step);
-			taskMonitor.setProgress((int)(((double)i/(double)context.numIterations)*90.+5));
-		}
-		checkCenter(m_fsim);
+		checkCenters();
+		for(ForceSimulator m_fsim : simulators)
+			addRepulsion(m_fsim);
+		runPhase(taskMonitor, schedule, "Phase 3 of 3", 2 * iterations / 3, iterations, checkCenter);
+		checkCenters();
+		if(partitioned != null)
+			partitioned.shutdown();
+		else
+			simulators.get(0).shutdown();
+		if(context.removeOverlaps)
+			removeOverlaps();
+		unfoldLeaves();
 
 		if(boundaries.containsKey(OUTER_UNION_KEY)) 
 			boundaries.remove(OUTER_UNION_KEY);
@@ -223,161 +355,811 @@ public class ForceDirectedLayoutTask extends AbstractLayoutTask {
 	}
 
 	/** Private method
-	 * Update positions of nodes
+	 * @return the value of the chosen category column for @param node, null if there is none
 	 */
-	private void updateNodeViews() {
-		for (CyNode node : forceItems.keySet()) {
-			ForceItem fitem = forceItems.get(node); 
-			View<CyNode> nodeView = netView.getNodeView(node);
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION, (double) fitem.location[0]);
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION, (double) fitem.location[1]);
+	private Object getGroup(CyNode node) {
+		if(chosenCategory == null)
+			return null;
+		return netView.getModel().getRow(node).getRaw(chosenCategory);
+	}
+
+	/** Private method
+	 * Find the nodes to fold: the nodes with a single neighbor, itself having other neighbors, of the
+	 * same category. Self loops are ignored; a node joined to its neighbor by several edges is no leaf.
+	 */
+	private void findLeaves() {
+		Map<CyNode, Integer> degree = new HashMap<>();
+		Map<CyNode, CyNode> neighbor = new HashMap<>();
+		for(View<CyEdge> edgeView : edgeViewList) {
+			CyNode source = edgeView.getModel().getSource(), target = edgeView.getModel().getTarget();
+			if(source == target)
+				continue;
+			degree.merge(source, 1, Integer::sum);
+			degree.merge(target, 1, Integer::sum);
+			neighbor.put(source, target);
+			neighbor.put(target, source);
+		}
+		Set<CyNode> laidOut = new HashSet<>();
+		for(View<CyNode> nodeView : nodeViewList)
+			laidOut.add(nodeView.getModel());
+		for(View<CyNode> nodeView : nodeViewList) {
+			CyNode leaf = nodeView.getModel();
+			CyNode parent = neighbor.get(leaf);
+			if(degree.getOrDefault(leaf, 0) != 1 || degree.get(parent) < 2 || !laidOut.contains(parent)
+					|| !Objects.equals(getGroup(leaf), getGroup(parent)))
+				continue;
+			foldedLeaves.put(leaf, parent);
+			leavesOf.computeIfAbsent(parent, p -> new ArrayList<>()).add(leaf);
 		}
 	}
 
-	/*Functions related to node projections*/
+	/** Private method
+	 * Fold the leaves into their neighbor for the simulation: the neighbor takes on the mass of its
+	 * leaves and grows to cover the ring they will be placed on, so that the layout leaves room for them.
+	 */
+	private void foldLeaves() {
+		for(Map.Entry<CyNode, List<CyNode>> entry : leavesOf.entrySet()) {
+			ForceItem parent = forceItems.get(entry.getKey());
+			float mass = parent.getMass();
+			double leafSize = 0.;
+			for(CyNode leaf : entry.getValue()) {
+				ForceItem fitem = forceItems.get(leaf);
+				mass += fitem.getMass();
+				leafSize = Math.max(leafSize, Math.max(fitem.getWidth(), fitem.getHeight()));
+			}
+			// the ring clears the neighbor and is long enough for all of its leaves
+			double spacing = LEAF_SPACING * leafSize;
+			double radius = Math.max(Math.max(parent.getWidth(), parent.getHeight()) / 2. + spacing / 2., 
+					entry.getValue().size() * spacing / (2 * Math.PI));
+			double step = Math.min(2 * Math.PI / entry.getValue().size(), spacing / radius);
+			leafRings.put(entry.getKey(), new double[] {radius, step});
+			float size = (float) (2 * radius + leafSize);
+			parent.setMass(mass);
+			parent.setDimensions(Math.max(parent.getWidth(), size), Math.max(parent.getHeight(), size));
+		}
+	}
 
 	/** Private method
-	 * This method projects all the nodes which have left their boundary
-	 * or entered into another boundary to their nearest respective locations
-	 * in their own boundaries.
-	 * @param m_fsim is the simulator that is currently running
-	 * @precondition boundaries is initialized 
-	 * @precondition m_fsim != null
+	 * Place the folded leaves of every node around it. The leaves fan out on a ring around the node, 
+	 * centered on the direction pointing away from its other neighbors, and spread over the whole ring
+	 * only if they need it. Leaves falling outside their boundary are projected back into it.
 	 */
-	private void checkCenter(ForceSimulator m_fsim) {
-		if(boundaries.size() != 0) {
-			Iterator itemsIterator = m_fsim.getItems();
-			while(itemsIterator.hasNext()) {
-				ForceItem nextItem = (ForceItem) itemsIterator.next();
-				Rectangle2D bbox = new Rectangle2D.Double((double) nextItem.location[0], (double) nextItem.location[1], 
-						nextItem.dimensions[0], nextItem.dimensions[1]);
-				BoundaryAnnotation nextBoundary;
-				if(boundaries.containsKey(nextItem.category))
-					nextBoundary = boundaries.get(nextItem.category);
+	private void unfoldLeaves() {
+		if(leavesOf.isEmpty())
+			return;
+		// the direction away from the other neighbors of every node with leaves
+		Map<CyNode, double[]> away = new HashMap<>();
+		for(View<CyEdge> edgeView : edgeViewList) {
+			CyNode source = edgeView.getModel().getSource(), target = edgeView.getModel().getTarget();
+			for(int end = 0; end < 2; end++) {
+				CyNode parent = end == 0 ? source : target, other = end == 0 ? target : source;
+				if(!leavesOf.containsKey(parent) || foldedLeaves.containsKey(other) || other == parent)
+					continue;
+				ForceItem p = forceItems.get(parent), o = forceItems.get(other);
+				double[] direction = away.computeIfAbsent(parent, n -> new double[2]);
+				direction[0] += p.getX() - o.getX();
+				direction[1] += p.getY() - o.getY();
+			}
+		}
+
+		// projections of leaves are not reported to the boundaries, the layout is over
+		ProjectionEngine engine = null;
+		int[] in = null, out = null;
+		if(categoryBoundaries.length > 0) {
+			engine = getProjectionEngine();
+			in = new int[engine.getBoundaryCount()];
+			out = new int[engine.getBoundaryCount()];
+		}
+		for(Map.Entry<CyNode, List<CyNode>> entry : leavesOf.entrySet()) {
+			ForceItem parent = forceItems.get(entry.getKey());
+			List<CyNode> leaves = entry.getValue();
+			double radius = leafRings.get(entry.getKey())[0], step = leafRings.get(entry.getKey())[1];
+			double[] direction = away.get(entry.getKey());
+			double center = direction == null ? 0. : Math.atan2(direction[1], direction[0]);
+			for(int j = 0; j < leaves.size(); j++) {
+				double angle = center + (j - (leaves.size() - 1) / 2.) * step;
+				ForceItem leaf = forceItems.get(leaves.get(j));
+				leaf.setLocation((float) (parent.getX() + radius * Math.cos(angle)), 
+						(float) (parent.getY() + radius * Math.sin(angle)));
+				if(engine != null)
+					engine.project(leaf.getStore(), leaf.getIndex(), leaf.getCategoryId(), in, out, projectionCandidates);
+			}
+		}
+	}
+
+	/** Private method
+	 * Remove the overlaps between the simulated nodes, moving them as little as possible. The nodes of
+	 * all boundaries are separated together, every node limited along each axis to the range in which
+	 * it stays within its boundary and out of the boundaries intersecting it; the nodes without a
+	 * boundary are not limited. Only the second axis of a pass separates all overlapping nodes, so the
+	 * axes take turns, parting the nodes held by their limits along one axis along the other. Where the
+	 * limits cannot be met, the nodes falling out of their shape are projected back into it, which may
+	 * push them into overlaps again, so passes are repeated until no overlap remains or OVERLAP_PASSES
+	 * are made.
+	 */
+	private void removeOverlaps() {
+		ForceItem[] items = getSimulatedItems();
+		int n = items.length;
+		double[] x = new double[n], y = new double[n], width = new double[n], height = new double[n];
+		for(int i = 0; i < n; i++) {
+			width[i] = items[i].getWidth();
+			height[i] = items[i].getHeight();
+		}
+
+		// projections are not reported to the boundaries, the layout is over
+		ProjectionEngine engine = null;
+		int[] in = null, out = null;
+		OverlapRemoval.Limits limits = null, transposed = null;
+		if(categoryBoundaries.length > 0) {
+			ProjectionEngine projectionEngine = getProjectionEngine();
+			engine = projectionEngine;
+			in = new int[engine.getBoundaryCount()];
+			out = new int[engine.getBoundaryCount()];
+			limits = (i, nx, ny, horizontal) -> getRange(projectionEngine, items[i], nx, ny, horizontal);
+			transposed = (i, ny, nx, vertical) -> getRange(projectionEngine, items[i], nx, ny, !vertical);
+		}
+		for(int pass = 0; pass < OVERLAP_PASSES; pass++) {
+			for(int i = 0; i < n; i++) {
+				x[i] = items[i].getX();
+				y[i] = items[i].getY();
+			}
+			if(pass % 2 == 0)
+				OverlapRemoval.removeOverlaps(x, y, width, height, null, limits, OVERLAP_GAP);
+			else
+				OverlapRemoval.removeOverlaps(y, x, height, width, null, transposed, OVERLAP_GAP);
+			for(int i = 0; i < n; i++) {
+				ForceItem fitem = items[i];
+				fitem.setLocation((float) x[i], (float) y[i]);
+				int id = fitem.getCategoryId();
+				if(engine != null && id != CategoryTable.NONE && id < categoryBoundaries.length)
+					engine.project(fitem.getStore(), fitem.getIndex(), id, in, out, projectionCandidates);
+			}
+			if(!hasOverlaps(items))
+				return;
+		}
+	}
+
+	/** Private method
+	 * Find the range in which @param fitem, centered at (@param x, @param y), stays admitted by its
+	 * boundary along the x axis if @param horizontal, along the y axis otherwise. Each end is reached in
+	 * steps doubling up to the size of the node, so that no boundary as large as the node is stepped
+	 * over, and is then narrowed down by bisection.
+	 * @return the range of the center of the node, or null if the node has no boundary or is not
+	 * admitted where it is
+	 */
+	private double[] getRange(ProjectionEngine engine, ForceItem fitem, double x, double y, boolean horizontal) {
+		int id = fitem.getCategoryId();
+		double width = fitem.getWidth(), height = fitem.getHeight();
+		if(id == CategoryTable.NONE || id >= categoryBoundaries.length 
+				|| !engine.admits(id, x, y, width, height, projectionCandidates))
+			return null;
+		Rectangle2D box = categoryBoundaries[id].getBoundingBox();
+		double start = horizontal ? x : y, size = horizontal ? width : height;
+		double[] range = new double[2];
+		for(int end = 0; end < 2; end++) {
+			double limit = horizontal ? (end == 0 ? box.getMinX() : box.getMaxX()) 
+					: (end == 0 ? box.getMinY() : box.getMaxY());
+			double sign = end == 0 ? -1. : 1., max = Math.max(0., sign * (limit - start) - size / 2.);
+			double good = 0., bad = -1., step = RANGE_TOLERANCE;
+			while(good < max) {
+				double t = Math.min(good + step, max), at = start + sign * t;
+				if(!engine.admits(id, horizontal ? at : x, horizontal ? y : at, width, height, projectionCandidates)) {
+					bad = t;
+					break;
+				}
+				good = t;
+				step = Math.min(2. * step, Math.max(size, RANGE_TOLERANCE));
+			}
+			while(bad - good > RANGE_TOLERANCE) {
+				double t = (good + bad) / 2., at = start + sign * t;
+				if(engine.admits(id, horizontal ? at : x, horizontal ? y : at, width, height, projectionCandidates))
+					good = t;
 				else
-					nextBoundary = boundaries.get(OUTER_UNION_KEY);
-
-				int moveDir = RectangularWallForce.IN_PROJECTION;
-				if(!contains(nextBoundary, bbox, moveDir)) {
-					// We moved the node outside of the shape. Find the closest point in the bound and move back
-					nextBoundary.newProjection(moveDir);
-					Point2D nearestPoint = getNearestPoint(nextBoundary, bbox, moveDir);
-					updateItemInfo(nextItem, nearestPoint, bbox);
-				} 
-
-				//look at each intersecting shape annotation and project accordingly
-				if(nextBoundary.hasIntersections()) {
-					moveDir = RectangularWallForce.OUT_PROJECTION;
-					for(BoundaryAnnotation intersectingBoundary : nextBoundary.getIntersections()) {
-						if(contains(intersectingBoundary, bbox, moveDir)) {
-							Point2D nearestPoint = getNearestPoint(intersectingBoundary, bbox, moveDir);
-							updateItemInfo(nextItem, nearestPoint, bbox);
-							intersectingBoundary.newProjection(moveDir);
-						}
-					}
-					moveDir = RectangularWallForce.IN_PROJECTION;
-					if(!contains(nextBoundary, bbox, moveDir)) 
-						updateItemInfo(nextItem, nextBoundary.getRandomNodeInit(), bbox);
-				} 
+					bad = t;
+			}
+			range[end] = start + sign * good;
+		}
+		return range;
+	}
+
+	/** Private method
+	 * @return true iff any two of @param items overlap, found by sweeping over them from left to right
+	 */
+	private static boolean hasOverlaps(ForceItem[] items) {
+		ForceItem[] sorted = items.clone();
+		Arrays.sort(sorted, (a, b) -> Float.compare(a.getX() - a.getWidth() / 2f, b.getX() - b.getWidth() / 2f));
+		for(int i = 0; i < sorted.length; i++) {
+			ForceItem a = sorted[i];
+			float right = a.getX() + a.getWidth() / 2f;
+			for(int j = i + 1; j < sorted.length; j++) {
+				ForceItem b = sorted[j];
+				if(b.getX() - b.getWidth() / 2f >= right)
+					break;
+				if(Math.abs(a.getY() - b.getY()) < (a.getHeight() + b.getHeight()) / 2f)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/** Private method
+	 * @return a new simulator using the chosen integrator, holding a spring force
+	 */
+	private ForceSimulator newSimulator() {
+		ForceSimulator m_fsim = new ForceSimulator(integrator.getNewIntegrator());
+		m_fsim.speedLimit = context.speedLimit;
+		m_fsim.setCategories(categories);
+		m_fsim.addForce(new SpringForce());
+		if(context.sleepParticles)
+			m_fsim.setSleeping((float) context.sleepDisplacement, context.sleepSteps);
+		m_fsim.setReorderInterval(context.reorderInterval);
+		return m_fsim;
+	}
+
+	/** Private method
+	 * Add the repulsion between the nodes, configured by the context, to @param m_fsim. When overlaps
+	 * are resolved by a collision force or removed after the layout, the n-body force only spreads the 
+	 * nodes and runs with a loose theta.
+	 */
+	private void addRepulsion(ForceSimulator m_fsim) {
+		ParallelNBodyForce nbodyForce;
+		if(context.removeOverlaps) {
+			nbodyForce = new ParallelNBodyForce(NBodyForce.DEFAULT_GRAV_CONSTANT, NBodyForce.DEFAULT_DISTANCE, 
+					LOOSE_THETA, false);
+		} else if(context.avoidOverlap && context.collisionForce) {
+			nbodyForce = new ParallelNBodyForce(NBodyForce.DEFAULT_GRAV_CONSTANT, NBodyForce.DEFAULT_DISTANCE, 
+					LOOSE_THETA, false);
+			m_fsim.addForce(new CollisionForce());
+		} else {
+			nbodyForce = new ParallelNBodyForce(context.avoidOverlap);
+		}
+		nbodyForce.setReuseTree(context.reuseQuadTree);
+		nbodyForce.setRebuildThreshold((float) context.quadTreeRebuildDistance);
+		nbodyForce.setUpdateInterval(context.repulsionInterval);
+		m_fsim.addForce(nbodyForce);
+	}
+
+	/** Private method
+	 * @return a new convergence monitor configured by the context. The monitor feeds the cooling 
+	 * schedule and can end phases early; a settled window spans a projection check, made every
+	 * @param checkCenter iterations.
+	 */
+	private ConvergenceMonitor newConvergenceMonitor(int checkCenter) {
+		ConvergenceMonitor monitor = new ConvergenceMonitor((float) context.convergenceEnergy,
+				(float) context.convergenceDisplacement, context.convergenceProjections,
+				Math.max(context.convergenceSteps, checkCenter));
+		monitor.setPlateauTolerance((float) context.convergencePlateau);
+		return monitor;
+	}
+
+	/** Private method
+	 * @return the items of the nodes taking part in the simulation, in the order of the node views
+	 */
+	private ForceItem[] getSimulatedItems() {
+		List<ForceItem> simulated = new ArrayList<>();
+		for(View<CyNode> nodeView : nodeViewList)
+			if(!foldedLeaves.containsKey(nodeView.getModel()))
+				simulated.add(forceItems.get(nodeView.getModel()));
+		return simulated.toArray(new ForceItem[simulated.size()]);
+	}
+
+	/** Private method
+	 * Lay out the coarse levels of a multilevel layout. The network is coarsened within every 
+	 * category, the coarsest level is laid out in full from the centers of mass of the current node
+	 * locations, and every finer level is refined for a few iterations from the locations of the
+	 * level above, down to the nodes themselves. Every level is laid out by a simulator of its own,
+	 * with the wall forces of the boundaries and the repulsion from the start.
+	 * @return true if the nodes were placed from a coarser level, false if the network is too small
+	 * or sparse to be coarsened
+	 */
+	private boolean layoutCoarseLevels(TaskMonitor taskMonitor) {
+		ForceItem[] items = getSimulatedItems();
+		int n = items.length;
+		Map<ForceItem, Integer> ids = new IdentityHashMap<>();
+		int[] category = new int[n];
+		float[] mass = new float[n], width = new float[n], height = new float[n];
+		for(int i = 0; i < n; i++) {
+			ids.put(items[i], i);
+			category[i] = items[i].getCategoryId();
+			mass[i] = items[i].getMass();
+			width[i] = items[i].getWidth();
+			height[i] = items[i].getHeight();
+		}
+		List<int[]> edges = new ArrayList<>();
+		for(View<CyEdge> edgeView : edgeViewList) {
+			Integer source = ids.get(forceItems.get(edgeView.getModel().getSource()));
+			Integer target = ids.get(forceItems.get(edgeView.getModel().getTarget()));
+			if(source != null && target != null && !source.equals(target))
+				edges.add(new int[] {source, target});
+		}
+		int[] edgeSource = new int[edges.size()], edgeTarget = new int[edges.size()];
+		float[] edgeWeight = new float[edges.size()];
+		for(int e = 0; e < edges.size(); e++) {
+			edgeSource[e] = edges.get(e)[0];
+			edgeTarget[e] = edges.get(e)[1];
+			edgeWeight[e] = 1f;
+		}
+		CoarseningHierarchy hierarchy = new CoarseningHierarchy(new CoarseningHierarchy.Level(n, category, 
+				mass, width, height, edgeSource, edgeTarget, edgeWeight), MULTILEVEL_MIN_NODES);
+		int top = hierarchy.getLevelCount() - 1;
+		if(top == 0)
+			return false;
+
+		// the locations of the nodes of every level, restricted from the current node locations
+		float[][] x = new float[top + 1][], y = new float[top + 1][];
+		for(int level = 0; level <= top; level++) {
+			x[level] = new float[hierarchy.getLevel(level).size];
+			y[level] = new float[hierarchy.getLevel(level).size];
+		}
+		for(int i = 0; i < n; i++) {
+			x[0][i] = items[i].getX();
+			y[0][i] = items[i].getY();
+		}
+		for(int level = 0; level < top; level++)
+			hierarchy.restrict(level, x[level], y[level], x[level + 1], y[level + 1]);
+		if(boundaries != null)
+			for(BoundaryAnnotation boundary : boundaries.values()) 
+				addAnnotationForce(boundary);
+
+		// step a simulator of the level in place of those of the nodes
+		List<ForceSimulator> nodeSimulators = simulators;
+		PartitionedSimulator nodePartitioned = partitioned;
+		partitioned = null;
+		try {
+			for(int level = top; level > 0 && !cancelled; level--) {
+				CoarseningHierarchy.Level graph = hierarchy.getLevel(level);
+				ForceSimulator m_fsim = newSimulator();
+				m_fsim.setThreadCount(context.numThreads);
+				ForceItem[] levelItems = new ForceItem[graph.size];
+				for(int c = 0; c < graph.size; c++) {
+					ForceItem fitem = new ForceItem();
+					fitem.setMass(graph.mass[c]);
+					fitem.setDimensions(graph.width[c], graph.height[c]);
+					fitem.setCategoryId(graph.category[c]);
+					fitem.setLocation(x[level][c], y[level][c]);
+					levelItems[c] = fitem;
+					m_fsim.addItem(fitem);
+				}
+				for(int e = 0; e < graph.getEdgeCount(); e++)
+					m_fsim.addSpring(levelItems[graph.edgeSource[e]], levelItems[graph.edgeTarget[e]], 
+							(float) context.defaultSpringCoefficient * graph.edgeWeight[e], 
+							(float) context.defaultSpringLength);
+				if(boundaries != null && !boundaries.isEmpty())
+					routeAnnotationForces(m_fsim);
+				addRepulsion(m_fsim);
+
+				iterations = level == top ? context.numIterations : Math.max(3, context.multilevelRefinement);
+				int checkCenter = (iterations / 25) + 1;
+				m_fsim.setConvergenceMonitor(newConvergenceMonitor(checkCenter));
+				simulators = Collections.singletonList(m_fsim);
+				runPhase(taskMonitor, getCoolingSchedule(iterations), "Level " + level + " of " + top, 
+						0, iterations, checkCenter);
+				checkCenters();
+				m_fsim.shutdown();
+
+				for(int c = 0; c < graph.size; c++) {
+					x[level][c] = levelItems[c].getX();
+					y[level][c] = levelItems[c].getY();
+				}
+				hierarchy.prolong(level, x[level], y[level], x[level - 1], y[level - 1]);
 			}
+		} finally {
+			simulators = nodeSimulators;
+			partitioned = nodePartitioned;
 		}
+
+		for(int i = 0; i < n; i++)
+			items[i].setLocation(x[0][i], y[0][i]);
+		return true;
 	}
 
 	/** Private method
-	 * This method is used by checkCenter() and @return true iff the @param nodebbox, taking into account its dimensions
-	 * and projection direction (@param moveDir), is respectively within the @param boundary
+	 * Lay out the connected components of every category on their own and pack them into the free
+	 * area of their boundary. Components are connected by the edges between nodes of the same category
+	 * only. Every component of several nodes is laid out by a copy of its nodes on a simulator of its
+	 * own, with springs and repulsion but without walls, and the simulators step concurrently as the
+	 * partitions of a single simulation. The bounding boxes of the components of a category, spaced
+	 * by the size of its largest node, are then packed into shelves filling the largest free rectangle
+	 * of its boundary, and the nodes are moved along with the box of their component.
+	 * @return true if the nodes were placed from their components, false if there are none
 	 */
-	private boolean contains(BoundaryAnnotation boundary, Rectangle2D nodebbox, int moveDir) {
-		boolean contained = true;
-		Rectangle2D shapeBox = boundary.getBoundingBox();
-		double[] diffVector = {Math.abs(nodebbox.getX() - shapeBox.getCenterX()), Math.abs(nodebbox.getY() - shapeBox.getCenterY())};
-		diffVector[0] += nodebbox.getWidth() / 2 * moveDir;
-		diffVector[1] += nodebbox.getHeight() / 2 * moveDir;
+	private boolean layoutComponents(TaskMonitor taskMonitor) {
+		ForceItem[] items = getSimulatedItems();
+		int n = items.length;
+		if(n == 0)
+			return false;
+		Map<ForceItem, Integer> ids = new IdentityHashMap<>();
+		for(int i = 0; i < n; i++)
+			ids.put(items[i], i);
+
+		// union the nodes joined by an edge within a category, halving the paths to the roots
+		int[] root = new int[n];
+		for(int i = 0; i < n; i++)
+			root[i] = i;
+		List<int[]> edges = new ArrayList<>();
+		for(View<CyEdge> edgeView : edgeViewList) {
+			Integer source = ids.get(forceItems.get(edgeView.getModel().getSource()));
+			Integer target = ids.get(forceItems.get(edgeView.getModel().getTarget()));
+			if(source == null || target == null || source.equals(target) 
+					|| items[source].getCategoryId() != items[target].getCategoryId())
+				continue;
+			edges.add(new int[] {source, target});
+			int a = findRoot(root, source), b = findRoot(root, target);
+			if(a != b)
+				root[Math.max(a, b)] = Math.min(a, b);
+		}
+		int[] component = new int[n];
+		List<List<Integer>> components = new ArrayList<>();
+		for(int i = 0; i < n; i++) {
+			int r = findRoot(root, i);
+			if(r == i) {
+				component[i] = components.size();
+				components.add(new ArrayList<>());
+			} else {
+				component[i] = component[r];
+			}
+			components.get(component[i]).add(i);
+		}
+
+		// every component of several nodes is laid out by copies of its nodes, which have no category
+		// so that neither the walls nor the projections of the boundaries apply to them
+		PartitionedSimulator layout = new PartitionedSimulator();
+		layout.setThreadCount(context.numThreads);
+		List<ForceSimulator> layoutSimulators = new ArrayList<>();
+		ForceSimulator[] simulatorOf = new ForceSimulator[components.size()];
+		ForceItem[] copies = new ForceItem[n];
+		for(int c = 0; c < components.size(); c++) {
+			if(components.get(c).size() < 2)
+				continue;
+			ForceSimulator m_fsim = newSimulator();
+			addRepulsion(m_fsim);
+			for(int i : components.get(c)) {
+				ForceItem copy = new ForceItem();
+				copy.setMass(items[i].getMass());
+				copy.setDimensions(items[i].getWidth(), items[i].getHeight());
+				copy.setLocation(items[i].getX(), items[i].getY());
+				copies[i] = copy;
+				m_fsim.addItem(copy);
+			}
+			simulatorOf[c] = m_fsim;
+			layout.addPartition(m_fsim);
+			layoutSimulators.add(m_fsim);
+		}
+		for(int[] edge : edges)
+			simulatorOf[component[edge[0]]].addSpring(copies[edge[0]], copies[edge[1]], 
+					(float) context.defaultSpringCoefficient, (float) context.defaultSpringLength);
+
+		if(!layoutSimulators.isEmpty()) {
+			List<ForceSimulator> nodeSimulators = simulators;
+			PartitionedSimulator nodePartitioned = partitioned;
+			simulators = layoutSimulators;
+			partitioned = layout;
+			try {
+				iterations = context.numIterations;
+				int checkCenter = (iterations / 25) + 1;
+				for(ForceSimulator m_fsim : layoutSimulators)
+					m_fsim.setConvergenceMonitor(newConvergenceMonitor(checkCenter));
+				runPhase(taskMonitor, getCoolingSchedule(iterations), "Components", 0, iterations, checkCenter);
+				layout.shutdown();
+			} finally {
+				simulators = nodeSimulators;
+				partitioned = nodePartitioned;
+			}
+			for(int i = 0; i < n; i++)
+				if(copies[i] != null)
+					items[i].setLocation(copies[i].getX(), copies[i].getY());
+		}
+
+		// pack the components of every category into the free area of its boundary
+		Map<Integer, List<Integer>> componentsOf = new LinkedHashMap<>();
+		for(int c = 0; c < components.size(); c++)
+			componentsOf.computeIfAbsent(items[components.get(c).get(0)].getCategoryId(), 
+					id -> new ArrayList<>()).add(c);
+		for(Map.Entry<Integer, List<Integer>> entry : componentsOf.entrySet()) {
+			List<Rectangle2D> boxes = new ArrayList<>();
+			double gap = 0.;
+			for(int c : entry.getValue()) {
+				Rectangle2D box = null;
+				for(int i : components.get(c)) {
+					ForceItem item = items[i];
+					Rectangle2D bounds = new Rectangle2D.Double(item.getX() - item.getWidth() / 2., 
+							item.getY() - item.getHeight() / 2., item.getWidth(), item.getHeight());
+					box = box == null ? bounds : box.createUnion(bounds);
+					gap = Math.max(gap, Math.max(item.getWidth(), item.getHeight()));
+				}
+				boxes.add(box);
+			}
+			List<Point2D> corners = packComponents(boxes, getPackingRegion(entry.getKey(), boxes), gap);
+			for(int k = 0; k < boxes.size(); k++) {
+				float dx = (float) (corners.get(k).getX() - boxes.get(k).getX());
+				float dy = (float) (corners.get(k).getY() - boxes.get(k).getY());
+				for(int i : components.get(entry.getValue().get(k)))
+					items[i].setLocation(items[i].getX() + dx, items[i].getY() + dy);
+			}
+		}
+		return true;
+	}
+
+	/** Private method
+	 * @return the root of the set of @param i in the union-find forest @param root, halving the path
+	 */
+	private static int findRoot(int[] root, int i) {
+		while(root[i] != i) {
+			root[i] = root[root[i]];
+			i = root[i];
+		}
+		return i;
+	}
+
+	/** Private method
+	 * @return the region the components of category @param id are packed into: the largest rectangle
+	 * of its boundary free of intersecting boundaries, within the rectangle inscribed in an ellipse.
+	 * When the two do not meet, the inscribed rectangle is used. Categories without a boundary are
+	 * packed into a square around the center of their @param boxes.
+	 */
+	private Rectangle2D getPackingRegion(int id, List<Rectangle2D> boxes) {
+		if(id < 0 || id >= categoryBoundaries.length) {
+			double x = 0., y = 0., area = 0.;
+			for(Rectangle2D box : boxes) {
+				x += box.getCenterX() / boxes.size();
+				y += box.getCenterY() / boxes.size();
+				area += box.getWidth() * box.getHeight();
+			}
+			double side = Math.sqrt(area);
+			return new Rectangle2D.Double(x - side / 2., y - side / 2., side, side);
+		}
+		BoundaryAnnotation boundary = categoryBoundaries[id];
+		Rectangle2D region = boundary.getBoundingBox();
+		if(boundary.hasIntersections()) {
+			List<Rectangle2D> intersecting = new ArrayList<>();
+			for(BoundaryAnnotation intersectingBoundary : boundary.getIntersections())
+				intersecting.add(intersectingBoundary.getBoundingBox());
+			List<Rectangle2D> free = BoundaryContainsAlgorithm.doAlgorithm(region, intersecting);
+			if(!free.isEmpty())
+				region = free.get(0);
+		}
+		if(boundary.getShapeType().equals("Ellipse")) {
+			// the free rectangle may lie off the center of the ellipse, it is cut down to the rectangle
+			// inscribed in the ellipse rather than shrunk around its own center
+			Rectangle2D box = boundary.getBoundingBox();
+			double width = box.getWidth() / Math.sqrt(2.), height = box.getHeight() / Math.sqrt(2.);
+			Rectangle2D inscribed = new Rectangle2D.Double(box.getCenterX() - width / 2., 
+					box.getCenterY() - height / 2., width, height);
+			Rectangle2D inside = region.createIntersection(inscribed);
+			region = inside.getWidth() > 0. && inside.getHeight() > 0. ? inside : inscribed;
+		}
+		return region;
+	}
+
+	/** Private method
+	 * Pack rectangles into shelves, the tallest first: every shelf is filled from left to right up to
+	 * a width giving the packing the aspect ratio of the region, and the packing is centered on the
+	 * region. A packing larger than the region overflows it evenly on all sides.
+	 * @param boxes are the rectangles to pack
+	 * @param region is the rectangle to pack them into
+	 * @param gap is the space left between two rectangles
+	 * @return the location of the top left corner of every rectangle of boxes
+	 */
+	private static List<Point2D> packComponents(List<Rectangle2D> boxes, Rectangle2D region, double gap) {
+		Integer[] order = new Integer[boxes.size()];
+		double area = 0., widest = 0.;
+		for(int k = 0; k < boxes.size(); k++) {
+			order[k] = k;
+			area += (boxes.get(k).getWidth() + gap) * (boxes.get(k).getHeight() + gap);
+			widest = Math.max(widest, boxes.get(k).getWidth() + gap);
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(boxes.get(b).getHeight(), boxes.get(a).getHeight()));
+		double aspect = region.getHeight() > 0. ? region.getWidth() / region.getHeight() : 1.;
+		double shelfWidth = Math.max(widest, Math.sqrt(area * aspect));
+
+		double[] x = new double[boxes.size()], y = new double[boxes.size()];
+		double shelfX = 0., shelfY = 0., shelfHeight = 0., packedWidth = 0.;
+		for(int k : order) {
+			Rectangle2D box = boxes.get(k);
+			if(shelfX > 0. && shelfX + box.getWidth() + gap > shelfWidth) {
+				shelfY += shelfHeight;
+				shelfX = 0.;
+				shelfHeight = 0.;
+			}
+			x[k] = shelfX;
+			y[k] = shelfY;
+			shelfX += box.getWidth() + gap;
+			shelfHeight = Math.max(shelfHeight, box.getHeight() + gap);
+			packedWidth = Math.max(packedWidth, shelfX);
+		}
+		double packedHeight = shelfY + shelfHeight;
+
+		// center the packing, the trailing gaps excluded
+		double left = region.getCenterX() - (packedWidth - gap) / 2.;
+		double top = region.getCenterY() - (packedHeight - gap) / 2.;
+		List<Point2D> corners = new ArrayList<>();
+		for(int k = 0; k < boxes.size(); k++)
+			corners.add(new Point2D.Double(left + x[k], top + y[k]));
+		return corners;
+	}
 
-		switch(boundary.getShapeType()) {
-		case "Rounded Rectangle":
-		case "Rectangle": 
-			if(diffVector[0] > shapeBox.getWidth() / 2. || diffVector[1] > shapeBox.getHeight() / 2.) 
-				contained = false;
-			break;
+	/** Private method
+	 * Set the speed limit of all simulators to @param speedLimit
+	 */
+	private void setSpeedLimit(float speedLimit) {
+		for(ForceSimulator m_fsim : simulators)
+			m_fsim.speedLimit = speedLimit;
+	}
 
-		case "Ellipse":
-			double xVec = (diffVector[0] * diffVector[0]) / (shapeBox.getWidth() * shapeBox.getWidth() / 4.);
-			double yVec = (diffVector[1] * diffVector[1]) / (shapeBox.getHeight() * shapeBox.getHeight() / 4.);
-			if(xVec + yVec >= 1)
-				contained = false;
-			break;
+	/** Private method
+	 * Run the simulators for the iterations [from, to) of the layout, with timesteps taken from
+	 * @param schedule, checking the center every @param checkCenter iterations. The schedule is
+	 * not reset, so that it cools over all phases of a layout rather than heating up again at the
+	 * start of every phase. The phase ends early once the convergence monitors of all simulators
+	 * report convergence, if enabled. When partitioned, every iteration is one synchronized round
+	 * of the partitions.
+	 */
+	private void runPhase(TaskMonitor taskMonitor, CoolingSchedule schedule,
+			String phase, int from, int to, int checkCenter) {
+		for(ForceSimulator m_fsim : simulators)
+			m_fsim.getConvergenceMonitor().reset();
+		for (int i = from; i < to && !cancelled; i++) {
+			if(context.stopOnConvergence && isConverged())
+				break;
+			long step = schedule.nextTimestep();
+			if(i % checkCenter == 0) {
+				checkCenters();
+				taskMonitor.setStatusMessage(phase + ", iteration " + (i - from + 1) + " of " 
+						+ (to - from) + ": timestep " + step + " (" + schedule + ")");
+			}
+			if(partitioned != null)
+				partitioned.runSimulator(step);
+			else
+				simulators.get(0).runSimulator(step);
+			schedule.update(getKineticEnergy());
+			taskMonitor.setProgress((int)(((double)i/(double)iterations)*90.+5));
 		}
-		return contained;
 	}
 
 	/** Private method
-	 * @param item is the force item that is to be set to the location of
-	 * @param loc, a point2D representing a point in the network.
+	 * @return true iff the convergence monitors of all simulators report convergence
+	 */
+	private boolean isConverged() {
+		for(ForceSimulator m_fsim : simulators)
+			if(!m_fsim.getConvergenceMonitor().isConverged())
+				return false;
+		return true;
+	}
+
+	/** Private method
+	 * @return the highest mean kinetic energy per node among the simulators after the last step
 	 */
-	private void updateItemInfo(ForceItem item, Point2D loc, Rectangle2D bbox) {
-		item.location[0] = (float) loc.getX();
-		item.location[1] = (float) loc.getY();
-		item.plocation[0] = item.location[0];
-		item.plocation[1] = item.location[1];
-		bbox.setRect((double) item.location[0], (double) item.location[1], item.dimensions[0], item.dimensions[1]);
-	} 
+	private float getKineticEnergy() {
+		float energy = 0f;
+		for(ForceSimulator m_fsim : simulators)
+			energy = Math.max(energy, m_fsim.getConvergenceMonitor().getKineticEnergy());
+		return energy;
+	}
 
 	/** Private method
-	 * @return the point at the border of the @param boundary closest to @param bbox, the node bounding box. This
-	 * takes into account the direction of the projection @param moveDir
+	 * Check the center of the nodes of every simulator and report the projections made
+	 * to its convergence monitor.
 	 */
-	private Point2D getNearestPoint(BoundaryAnnotation boundary, Rectangle2D bbox, int moveDir) {
-		Rectangle2D shapeBox = boundary.getBoundingBox();
-		double[] diffVector = { bbox.getX() - shapeBox.getCenterX(), bbox.getY() - shapeBox.getCenterY()};
-		diffVector[0] += bbox.getWidth() / 2 * moveDir * (diffVector[0] < 0 ? -1 : 1);
-		diffVector[1] += bbox.getHeight() / 2 * moveDir * (diffVector[1] < 0 ? -1 : 1);
+	private void checkCenters() {
+		for(ForceSimulator m_fsim : simulators) {
+			int projections = checkCenter(m_fsim);
+			if(m_fsim.getConvergenceMonitor() != null)
+				m_fsim.getConvergenceMonitor().addProjections(projections);
+		}
+	}
 
-		double scale = 1.;
-		switch(boundary.getShapeType()) {
-		case "Rounded Rectangle":
-		case "Rectangle":
-			scale = getScaleRectangle(shapeBox, diffVector);
-			break;
+	/** Private method
+	 * @return a new instance of the cooling schedule chosen in the context, reset to cool over
+	 * @param steps iterations
+	 */
+	private CoolingSchedule getCoolingSchedule(int steps) {
+		ForceDirectedLayout.CoolingSchedules schedule = context.coolingSchedule.getSelectedValue();
+		if(schedule == null)
+			schedule = ForceDirectedLayout.CoolingSchedules.EXPONENTIAL;
+		// a shortened layout starts cool, as much closer to the final timestep as it is shorter
+		double heat = Math.min(1., (double) iterations / context.numIterations);
+		long initialTimestep = context.finalTimestep + 
+				Math.round((context.initialTimestep - context.finalTimestep) * heat);
+		CoolingSchedule coolingSchedule = schedule.getNewSchedule(initialTimestep, context.finalTimestep);
+		coolingSchedule.reset(steps);
+		return coolingSchedule;
+	}
 
-		case "Ellipse":
-			scale = getScaleEllipse(shapeBox, bbox, diffVector);
-			break;
-		}	
+	/** Private method
+	 * Update positions of nodes
+	 */
+	private void updateNodeViews() {
+		for (CyNode node : forceItems.keySet()) {
+			ForceItem fitem = forceItems.get(node); 
+			View<CyNode> nodeView = netView.getNodeView(node);
+			nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION, (double) fitem.getX());
+			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION, (double) fitem.getY());
+		}
+	}
 
-		scale *= (moveDir == 1 ? 0.985 : 1.015);
-		diffVector[0] = diffVector[0] * scale; 
-		diffVector[1] = diffVector[1] * scale;
-		diffVector[0] -= bbox.getWidth() / 2 * moveDir * (diffVector[0] < 0 ? -1 : 1);
-		diffVector[1] -= bbox.getHeight() / 2 * moveDir * (diffVector[1] < 0 ? -1 : 1);
+	/*Functions related to node projections*/
 
-		return new Point2D.Double(shapeBox.getCenterX() + diffVector[0], shapeBox.getCenterY() + diffVector[1]);
+	/** Private method
+	 * @return the projection engine compiled from the boundaries of the categories, built on first
+	 * use together with the counters and scratch space passed to it
+	 */
+	private ProjectionEngine getProjectionEngine() {
+		if(projectionEngine == null) {
+			projectionEngine = new ProjectionEngine(categoryBoundaries);
+			inProjections = new int[projectionEngine.getBoundaryCount()];
+			outProjections = new int[projectionEngine.getBoundaryCount()];
+			projectionCandidates = new int[projectionEngine.getBoundaryCount()];
+		}
+		return projectionEngine;
 	}
 
 	/** Private method
-	 * @return the scale factor by which to scale the @param diffVector of a node
-	 * with respect to @param shape, corresponding to a rectangle
+	 * Spread the nodes of every boundary over its free area rather than piling them up on a single
+	 * point. The nodes are shared out among the initialization locations of their boundary, and the
+	 * nodes of a location are placed at the points of a Halton sequence over a region around it, sized
+	 * to give every node a cell SEED_SPACING times its own size. Points at which a node would be
+	 * projected, outside its boundary or inside an intersecting one, are skipped; a node without an
+	 * admitted point after SEED_ATTEMPTS points stays at the initialization location.
+	 * @param members holds the nodes of every boundary, indexed by category id
 	 */
-	private double getScaleRectangle(Rectangle2D shape, double[] diffVector) {
-		double scale = 1.;
-		//if top or bottom are sides are closer -> scale based on height, otherwise based on width
-		if(shape.getHeight() / shape.getWidth() <= Math.abs(diffVector[1] / diffVector[0])) 
-			scale = (shape.getHeight() / 2) / Math.abs(diffVector[1]);
-		else 
-			scale = (shape.getWidth() / 2) / Math.abs(diffVector[0]);
-		return scale;
+	private void seedNodeLocations(List<List<ForceItem>> members) {
+		ProjectionEngine engine = getProjectionEngine();
+		for(int id = 0; id < categoryBoundaries.length; id++) {
+			List<ForceItem> items = members.get(id);
+			List<Point2D> seeds = categoryBoundaries[id].getInitializations();
+			Rectangle2D box = categoryBoundaries[id].getBoundingBox();
+			if(items.isEmpty() || seeds == null || seeds.isEmpty() || box.isEmpty())
+				continue;
+
+			for(int s = 0; s < seeds.size(); s++) {
+				// the nodes s, s + seeds.size(), ... are placed around seed s
+				Point2D seed = seeds.get(s);
+				double area = 0.;
+				for(int i = s; i < items.size(); i += seeds.size())
+					area += SEED_SPACING * items.get(i).getWidth() * SEED_SPACING * items.get(i).getHeight();
+				double width = Math.sqrt(area * box.getWidth() / box.getHeight()), height = area / width;
+				Rectangle2D region = box.createIntersection(new Rectangle2D.Double(
+						seed.getX() - width / 2., seed.getY() - height / 2., width, height));
+
+				HaltonSequence halton = new HaltonSequence();
+				for(int i = s; i < items.size(); i += seeds.size()) {
+					ForceItem item = items.get(i);
+					item.setLocation((float) seed.getX(), (float) seed.getY());
+					for(int attempt = 0; attempt < SEED_ATTEMPTS && !region.isEmpty(); attempt++) {
+						double x = region.getX() + halton.getX() * region.getWidth();
+						double y = region.getY() + halton.getY() * region.getHeight();
+						halton.next();
+						if(engine.admits(id, x, y, item.getWidth(), item.getHeight(), projectionCandidates)) {
+							item.setLocation((float) x, (float) y);
+							break;
+						}
+					}
+				}
+			}
+		}
 	}
 
 	/** Private method
-	 * @return the scale factor by which to scale the @param diffVector of a node
-	 * with respect to @param shape, corresponding to an ellipse
+	 * This method projects all the nodes which have left their boundary
+	 * or entered into another boundary to their nearest respective locations
+	 * in their own boundaries.
+	 * @param m_fsim is the simulator that is currently running
+	 * @precondition boundaries is initialized 
+	 * @precondition m_fsim != null
+	 * @return the number of projections made
 	 */
-	private double getScaleEllipse(Rectangle2D shape, Rectangle2D bbox, double[] diffVector) { 
-		double scale = 1.;
-		double xVec = (diffVector[0] * diffVector[0]) / (shape.getWidth() * shape.getWidth() / 4.);
-		double yVec = (diffVector[1] * diffVector[1]) / (shape.getHeight() * shape.getHeight() / 4.);
-		scale = 1 / Math.sqrt(xVec + yVec);
-		return scale;
+	private int checkCenter(ForceSimulator m_fsim) {
+		int projections = 0;
+		if(boundaries.size() != 0) {
+			ProjectionEngine engine = getProjectionEngine();
+			ParticleStore store = m_fsim.getParticleStore();
+			int[] ids = store.category;
+			for(int i = 0, n = store.size(); i < n; i++) 
+				projections += engine.project(store, i, ids[i], inProjections, outProjections, 
+						projectionCandidates);
+			engine.commit(inProjections, outProjections);
+		}
+		return projections;
 	}
 
 	/** Private method
@@ -428,13 +1210,12 @@ public class ForceDirectedLayoutTask extends AbstractLayoutTask {
 	}
 
 	/** Private method
-	 * This method adds a wall force, otherwise known as an annotation force corresponding to the given 
-	 * boundary within the passed simulation. This wall force is in the shape of a bounding rectangle. For
-	 * ellipses, the bounds of the wall are within the annotation.
-	 * @param m_fsim is the ForceSimulator instance that this added force belongs to.
+	 * This method creates a wall force, otherwise known as an annotation force corresponding to the given 
+	 * boundary. This wall force is in the shape of a bounding rectangle. For ellipses, the bounds of the 
+	 * wall are within the annotation. The wall is added to a simulation by routeAnnotationForces().
 	 * @param shapeAnnotation stores an existing ShapeAnnotation.
 	 */
-	private void addAnnotationForce(ForceSimulator m_fsim, BoundaryAnnotation boundary) {
+	private void addAnnotationForce(BoundaryAnnotation boundary) {
 		Point2D dimensions = getAnnotationDimensions(boundary);
 		Point2D center = getAnnotationCenter(boundary);
 		BoundaryWallForce wall;
@@ -447,7 +1228,23 @@ public class ForceDirectedLayoutTask extends AbstractLayoutTask {
 					context.variableWallForce, context.wallScale);
 		}
 		boundary.setWallForce(wall);
-		m_fsim.addForce(wall);
+	}
+
+	/** Private method
+	 * This method adds the wall force of every boundary to the passed simulation, routed only to the 
+	 * nodes of that boundary's category and of the categories whose boundaries it intersects. Every
+	 * other node is unaffected by the wall, so each node only pays for the walls that constrain it.
+	 * @param m_fsim is the ForceSimulator instance that the wall forces belong to.
+	 * @precondition every boundary has a wall force
+	 */
+	private void routeAnnotationForces(ForceSimulator m_fsim) {
+		for(int id = 0; id < categoryBoundaries.length; id++) {
+			BoundaryAnnotation boundary = categoryBoundaries[id];
+			m_fsim.addForce(boundary.getWallForce(), id);
+			if(boundary.hasIntersections())
+				for(BoundaryAnnotation intersectingBoundary : boundary.getIntersections())
+					m_fsim.addForce(intersectingBoundary.getWallForce(), id);
+		}
 	}
 
 	/** Private method
@@ -485,9 +1282,17 @@ public class ForceDirectedLayoutTask extends AbstractLayoutTask {
 		initNodes.add(new Point2D.Double(xCenter, yCenter));
 		if(!applySpecialInitialization.isEmpty()) {
 			initNodes.remove(0);
+			double minArea = 0.;
 			List<Rectangle2D> initRectangles = BoundaryContainsAlgorithm.doAlgorithm(
-					boundingBox, applySpecialInitialization);
+					boundingBox, applySpecialInitialization, SEED_REGIONS);
+			// seed from every free area comparable to the largest one, or the center if none is free
+			if(initRectangles.isEmpty())
+				initNodes.add(new Point2D.Double(xCenter, yCenter));
+			else
+				minArea = SEED_AREA_FRACTION * initRectangles.get(0).getWidth() * initRectangles.get(0).getHeight();
 			for(Rectangle2D initRectangle : initRectangles) {
+				if(initRectangle.getWidth() * initRectangle.getHeight() < minArea)
+					break;
 				xCenter = initRectangle.getX() + initRectangle.getWidth() / 2.;
 				yCenter = initRectangle.getY() + initRectangle.getHeight() / 2.;
 				initNodes.add(new Point2D.Double(xCenter, yCenter));
@@ -505,7 +1310,9 @@ public class ForceDirectedLayoutTask extends AbstractLayoutTask {
 	private List<Rectangle2D> applySpecialInitialization(BoundaryAnnotation boundary, Rectangle2D boundingBox) {
 		List<Rectangle2D> listOfContainments = new ArrayList<>();
 		List<BoundaryAnnotation> listOfIntersections = new ArrayList<>();
-		for(BoundaryAnnotation comparedBoundary : boundaries.values()) {
+		int count = boundaryIndex.query(boundingBox, overlapping);
+		for(int k = 0; k < count; k++) {
+			BoundaryAnnotation comparedBoundary = indexedBoundaries[overlapping[k]];
 			Rectangle2D comparedBoundingBox = comparedBoundary.getBoundingBox();
 			if(comparedBoundary.getName().equals(boundary.getName())) {} 
 			else if(boundingBox.intersects(comparedBoundingBox) && !comparedBoundingBox.contains(boundingBox))  {
@@ -517,6 +1324,19 @@ public class ForceDirectedLayoutTask extends AbstractLayoutTask {
 		return listOfContainments;
 	}
 
+	/** Private method
+	 * Build the spatial index over the bounding boxes of all boundaries, in the iteration order
+	 * of the boundaries map so that queries list the boundaries in that order
+	 */
+	private void indexBoundaries() {
+		indexedBoundaries = boundaries.values().toArray(new BoundaryAnnotation[boundaries.size()]);
+		List<Rectangle2D> boxes = new ArrayList<>();
+		for(BoundaryAnnotation boundary : indexedBoundaries)
+			boxes.add(boundary.getBoundingBox());
+		boundaryIndex = new BoundaryIndex(boxes);
+		overlapping = new int[boxes.size()];
+	}
+
 	/** Private method
 	 * @return a Rectangle2D representing the union of the boundaries in the boundaries map
 	 */
@@ -0,0 +1,318 @@
+package edu.ucsf.rbvi.boundaryLayout.internal.layouts;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.ucsf.rbvi.boundaryLayout.internal.algorithms.BoundaryIndex;
+import prefuse.util.force.BoundaryWallForce;
+import prefuse.util.force.ParticleStore;
+
+/**
+ * Projects nodes that left their boundary, or entered a boundary intersecting it, back to
+ * the nearest point of their own boundary. The boundaries are compiled once into compact shape
+ * descriptors indexed by an integer id: the kind of shape, its center, half extents and the
+ * reciprocals needed by the containment tests. The boundaries of the node categories keep the
+ * id of their category, so the category column of a store indexes the engine directly. Nodes
+ * are projected in place within a ParticleStore, so a projection pass does not allocate.
+ *
+ * The descriptors are never modified after construction. Projections are only counted into
+ * arrays passed by the caller and applied to the boundaries afterwards with commit(), so
+ * several threads may project distinct nodes concurrently, each with its own counters.
+ *
+ * A node is only projected out of the boundaries intersecting its own. When there are many of
+ * them, e.g. for the nodes of the outer boundary, the candidates are looked up in a spatial index
+ * over the bounding boxes of the boundaries rather than tested one by one.
+ */
+class ProjectionEngine {
+	/** The kinds of shapes the engine knows how to project onto */
+	enum Kind {
+		RECTANGLE, ELLIPSE, OTHER;
+
+		static Kind of(String shapeType) {
+			switch(shapeType) {
+			case "Rounded Rectangle":
+			case "Rectangle":
+				return RECTANGLE;
+			case "Ellipse":
+				return ELLIPSE;
+			default:
+				return OTHER;
+			}
+		}
+	}
+
+	private final BoundaryAnnotation[] boundaries;
+	private final int categoryCount;
+	private final Kind[] kinds;
+	private final double[] centerX, centerY;
+	private final double[] halfWidth, halfHeight;
+	private final double[] aspect; // height / width
+	private final double[] invHalfWidthSq, invHalfHeightSq;
+	private final int[][] intersections;
+	private final BoundaryIndex index;
+
+	/** The number of intersecting boundaries above which the index finds the candidates */
+	private static final int INDEX_THRESHOLD = 8;
+	/** Widens the box of a node looked up in the index, to absorb rounding differences */
+	private static final double QUERY_SLACK = 1e-3;
+
+	/**
+	 * Compile the given boundaries, together with every boundary intersecting them.
+	 * @param categories holds the boundary of the nodes of every category id, every id beyond
+	 * the array has no boundary
+	 */
+	ProjectionEngine(BoundaryAnnotation[] categories) {
+		Map<BoundaryAnnotation, Integer> ids = new IdentityHashMap<>();
+		List<BoundaryAnnotation> order = new ArrayList<>();
+		for(BoundaryAnnotation boundary : categories) {
+			ids.putIfAbsent(boundary, order.size());
+			order.add(boundary);
+		}
+		categoryCount = categories.length;
+		for(int i = 0; i < order.size(); i++)
+			if(order.get(i).hasIntersections())
+				for(BoundaryAnnotation intersecting : order.get(i).getIntersections())
+					intern(intersecting, ids, order);
+
+		int count = order.size();
+		boundaries = order.toArray(new BoundaryAnnotation[count]);
+		kinds = new Kind[count];
+		centerX = new double[count];
+		centerY = new double[count];
+		halfWidth = new double[count];
+		halfHeight = new double[count];
+		aspect = new double[count];
+		invHalfWidthSq = new double[count];
+		invHalfHeightSq = new double[count];
+		intersections = new int[count][];
+		List<Rectangle2D> boxes = new ArrayList<>();
+		for(int b = 0; b < count; b++) {
+			BoundaryAnnotation boundary = boundaries[b];
+			Rectangle2D box = boundary.getBoundingBox();
+			kinds[b] = Kind.of(boundary.getShapeType());
+			centerX[b] = box.getCenterX();
+			centerY[b] = box.getCenterY();
+			halfWidth[b] = box.getWidth() / 2.;
+			halfHeight[b] = box.getHeight() / 2.;
+			aspect[b] = box.getHeight() / box.getWidth();
+			invHalfWidthSq[b] = 1. / (box.getWidth() * box.getWidth() / 4.);
+			invHalfHeightSq[b] = 1. / (box.getHeight() * box.getHeight() / 4.);
+			List<BoundaryAnnotation> intersecting = boundary.hasIntersections() ?
+					boundary.getIntersections() : new ArrayList<>();
+			intersections[b] = new int[intersecting.size()];
+			for(int j = 0; j < intersecting.size(); j++)
+				intersections[b][j] = ids.get(intersecting.get(j));
+			// intersections are listed in id order, the order the index reports them in
+			Arrays.sort(intersections[b]);
+			boxes.add(box);
+		}
+		index = new BoundaryIndex(boxes);
+	}
+
+	private static void intern(BoundaryAnnotation boundary, Map<BoundaryAnnotation, Integer> ids,
+			List<BoundaryAnnotation> order) {
+		if(!ids.containsKey(boundary)) {
+			ids.put(boundary, order.size());
+			order.add(boundary);
+		}
+	}
+
+	/**
+	 * @return the number of compiled boundaries
+	 */
+	int getBoundaryCount() {
+		return boundaries.length;
+	}
+
+	/**
+	 * Project a node back into its boundary and out of the boundaries intersecting it.
+	 * @param store holds the node, whose location and previous location are updated in place
+	 * @param i is the index of the node within the store, woken if it is moved
+	 * @param b is the category id of the node, the node is left alone if its category has no boundary
+	 * @param inCounts counts, per boundary id, the projections into that boundary
+	 * @param outCounts counts, per boundary id, the projections out of that boundary
+	 * @param candidates is scratch space holding getBoundaryCount() ids
+	 * @return the number of times the node was moved
+	 */
+	int project(ParticleStore store, int i, int b, int[] inCounts, int[] outCounts, int[] candidates) {
+		if(b < 0 || b >= categoryCount)
+			return 0;
+		float[] location = store.location;
+		double width = store.dimensions[2*i], height = store.dimensions[2*i+1];
+		int moved = 0;
+
+		int moveDir = BoundaryWallForce.IN_PROJECTION;
+		if(!contains(b, location[2*i], location[2*i+1], width, height, moveDir)) {
+			// We moved the node outside of the shape. Find the closest point in the bound and move back
+			inCounts[b]++;
+			moveToNearestPoint(store, i, b, width, height, moveDir);
+			moved++;
+		}
+
+		//look at each intersecting shape annotation and project accordingly
+		int[] intersecting = intersections[b];
+		if(intersecting.length > 0) {
+			moveDir = BoundaryWallForce.OUT_PROJECTION;
+			if(intersecting.length > INDEX_THRESHOLD) {
+				moved += projectOutIndexed(store, i, intersecting, width, height, outCounts, candidates);
+			} else {
+				for(int ib : intersecting) {
+					if(contains(ib, location[2*i], location[2*i+1], width, height, moveDir)) {
+						moveToNearestPoint(store, i, ib, width, height, moveDir);
+						outCounts[ib]++;
+						moved++;
+					}
+				}
+			}
+			moveDir = BoundaryWallForce.IN_PROJECTION;
+			if(!contains(b, location[2*i], location[2*i+1], width, height, moveDir)) {
+				Point2D init = boundaries[b].getRandomNodeInit();
+				moveTo(store, i, init.getX(), init.getY());
+				moved++;
+			}
+		}
+		if(moved > 0)
+			store.wake(i);
+		return moved;
+	}
+
+	/**
+	 * Check whether a node would be left in place by project(), i.e. lies within its boundary and
+	 * outside every boundary intersecting it.
+	 * @param b is the category id of the node, a node whose category has no boundary is always admitted
+	 * @param candidates is scratch space holding getBoundaryCount() ids
+	 * @return true iff a node of the given dimensions at (@param x, @param y) is admitted
+	 */
+	boolean admits(int b, double x, double y, double width, double height, int[] candidates) {
+		if(b < 0 || b >= categoryCount)
+			return true;
+		if(!contains(b, x, y, width, height, BoundaryWallForce.IN_PROJECTION))
+			return false;
+		int[] intersecting = intersections[b];
+		if(intersecting.length > INDEX_THRESHOLD) {
+			double dx = width / 2 + QUERY_SLACK, dy = height / 2 + QUERY_SLACK;
+			int count = index.query(x - dx, y - dy, x + dx, y + dy, candidates);
+			for(int k = 0; k < count; k++)
+				if(Arrays.binarySearch(intersecting, candidates[k]) >= 0 
+						&& contains(candidates[k], x, y, width, height, BoundaryWallForce.OUT_PROJECTION))
+					return false;
+		} else {
+			for(int ib : intersecting)
+				if(contains(ib, x, y, width, height, BoundaryWallForce.OUT_PROJECTION))
+					return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Project a node out of the given intersecting boundaries, in ascending id order, testing only
+	 * those whose bounding box overlaps the node. A node only ever overlaps a boundary whose
+	 * bounding box it overlaps, and the candidates are looked up again after every move, so the
+	 * node is moved exactly as if every intersecting boundary had been tested in turn.
+	 * @return the number of times the node was moved
+	 */
+	private int projectOutIndexed(ParticleStore store, int i, int[] intersecting, double width, double height,
+			int[] outCounts, int[] candidates) {
+		int moveDir = BoundaryWallForce.OUT_PROJECTION;
+		float[] location = store.location;
+		int moved = 0, last = -1, count = 0, k = 0;
+		boolean lookup = true;
+		while(true) {
+			if(lookup) {
+				double x = location[2*i], y = location[2*i+1];
+				double dx = width / 2 + QUERY_SLACK, dy = height / 2 + QUERY_SLACK;
+				count = index.query(x - dx, y - dy, x + dx, y + dy, candidates);
+				k = 0;
+				lookup = false;
+			}
+			if(k == count)
+				return moved;
+			int ib = candidates[k++];
+			if(ib <= last || Arrays.binarySearch(intersecting, ib) < 0)
+				continue;
+			last = ib;
+			if(contains(ib, location[2*i], location[2*i+1], width, height, moveDir)) {
+				moveToNearestPoint(store, i, ib, width, height, moveDir);
+				outCounts[ib]++;
+				moved++;
+				lookup = true;
+			}
+		}
+	}
+
+	/**
+	 * Report the projections counted by project() to the boundaries, so that they scale their
+	 * wall forces, and clear the counters.
+	 */
+	void commit(int[] inCounts, int[] outCounts) {
+		for(int b = 0; b < boundaries.length; b++) {
+			for(; inCounts[b] > 0; inCounts[b]--)
+				boundaries[b].newProjection(BoundaryWallForce.IN_PROJECTION);
+			for(; outCounts[b] > 0; outCounts[b]--)
+				boundaries[b].newProjection(BoundaryWallForce.OUT_PROJECTION);
+		}
+	}
+
+	/**
+	 * @return true iff the node at (@param x, @param y) of the given dimensions is within the
+	 * boundary @param b, taking into account the direction of the projection @param moveDir
+	 */
+	private boolean contains(int b, double x, double y, double width, double height, int moveDir) {
+		double dx = Math.abs(x - centerX[b]) + width / 2 * moveDir;
+		double dy = Math.abs(y - centerY[b]) + height / 2 * moveDir;
+		switch(kinds[b]) {
+		case RECTANGLE:
+			return !(dx > halfWidth[b] || dy > halfHeight[b]);
+		case ELLIPSE:
+			return dx * dx * invHalfWidthSq[b] + dy * dy * invHalfHeightSq[b] < 1;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Move node @param i to the point at the border of boundary @param b closest to it, taking
+	 * into account the direction of the projection @param moveDir
+	 */
+	private void moveToNearestPoint(ParticleStore store, int i, int b, double width, double height, int moveDir) {
+		double dx = store.location[2*i] - centerX[b];
+		double dy = store.location[2*i+1] - centerY[b];
+		dx += width / 2 * moveDir * (dx < 0 ? -1 : 1);
+		dy += height / 2 * moveDir * (dy < 0 ? -1 : 1);
+
+		double scale = 1.;
+		switch(kinds[b]) {
+		case RECTANGLE:
+			//if top or bottom are sides are closer -> scale based on height, otherwise based on width
+			if(aspect[b] <= Math.abs(dy / dx))
+				scale = halfHeight[b] / Math.abs(dy);
+			else
+				scale = halfWidth[b] / Math.abs(dx);
+			break;
+		case ELLIPSE:
+			scale = 1 / Math.sqrt(dx * dx * invHalfWidthSq[b] + dy * dy * invHalfHeightSq[b]);
+			break;
+		default:
+			break;
+		}
+
+		scale *= (moveDir == 1 ? 0.985 : 1.015);
+		dx *= scale;
+		dy *= scale;
+		dx -= width / 2 * moveDir * (dx < 0 ? -1 : 1);
+		dy -= height / 2 * moveDir * (dy < 0 ? -1 : 1);
+		moveTo(store, i, centerX[b] + dx, centerY[b] + dy);
+	}
+
+	private static void moveTo(ParticleStore store, int i, double x, double y) {
+		store.location[2*i] = (float) x;
+		store.location[2*i+1] = (float) y;
+		store.plocation[2*i] = store.location[2*i];
+		store.plocation[2*i+1] = store.location[2*i+1];
+	}
+}
@@ -13,6 +13,7 @@ public abstract class AbstractForce implements Force {
     protected float[] params;
     protected float[] minValues;
     protected float[] maxValues;
+    protected int updateInterval = 1;
 
     /**
      * Initialize this force function. This default implementation does nothing.
@@ -23,6 +24,16 @@ public abstract class AbstractForce implements Force {
         // do nothing.
     }
 
+    /**
+     * Notifies this force function that the particles were reordered. This
+     * default implementation does nothing, as most forces only keep state
+     * per particle from one init() to the next.
+     * @see prefuse.util.force.Force#reorder(int[])
+     */
+    public void reorder(int[] order) {
+        // do nothing.
+    }
+
     /**
      * @see prefuse.util.force.Force#getParameterCount()
      */
@@ -108,8 +119,47 @@ public abstract class AbstractForce implements Force {
         }
     }
     
+    /**
+     * @see prefuse.util.force.Force#getUpdateInterval()
+     */
+    public int getUpdateInterval() {
+        return updateInterval;
+    }
+    
+    /**
+     * Set the number of simulation steps over which the far field of this
+     * force function is reused.
+     * @param interval the update interval, one to evaluate the force every time
+     * @see prefuse.util.force.Force#getUpdateInterval()
+     */
+    public void setUpdateInterval(int interval) {
+        if ( interval < 1 )
+            throw new IllegalArgumentException("Update interval must be >= 1");
+        updateInterval = interval;
+    }
+    
     protected abstract String[] getParameterNames();
     
+    /**
+     * Returns a small pseudo-random value in the range [-0.5, 0.5) derived
+     * from the given particle index and salt. Forces use this to nudge apart
+     * particles sitting in exactly the same place; unlike a shared Random it
+     * is safe to call from several threads and gives the same value for the
+     * same inputs regardless of evaluation order.
+     * @param i the index of the particle being nudged
+     * @param salt any additional value distinguishing the call site
+     * @return the pseudo-random value
+     */
+    protected static float jitter(int i, int salt) {
+        int h = i * 0x9E3779B9 + salt;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return (h >>> 8) / (float)(1 << 24) - 0.5f;
+    }
+    
     /**
      * Returns false.
      * @see prefuse.util.force.Force#isItemForce()
@@ -135,6 +185,32 @@ public abstract class AbstractForce implements Force {
             "This class does not support this operation");
     }
     
+    /**
+     * Forwards to {@link #getForce(ForceItem)} using the item viewing the
+     * given particle. Subclasses working on the store columns directly
+     * should override this method.
+     * @see prefuse.util.force.Force#getForce(prefuse.util.force.ParticleStore, int)
+     */
+    public void getForce(ParticleStore store, int i) {
+        getForce(store.getItem(i));
+    }
+    
+    /**
+     * Computes the whole force, as the far field of a force without a near
+     * field.
+     * @see prefuse.util.force.Force#getFarForce(prefuse.util.force.ParticleStore, int)
+     */
+    public void getFarForce(ParticleStore store, int i) {
+        getForce(store, i);
+    }
+    
+    /**
+     * Does nothing, a force has no near field unless it overrides this method.
+     * @see prefuse.util.force.Force#getNearForce(prefuse.util.force.ParticleStore, int)
+     */
+    public void getNearForce(ParticleStore store, int i) {
+    }
+    
     /**
      * Throws an UnsupportedOperationException.
      * @see prefuse.util.force.Force#getForce(prefuse.util.force.Spring)
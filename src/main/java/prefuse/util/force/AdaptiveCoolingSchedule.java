@@ -0,0 +1,88 @@
+package prefuse.util.force;
+
+/**
+ * Cooling schedule that adapts the timestep to the energy of the simulation.
+ * Whenever the energy rises the timestep is cut by a constant factor; after
+ * a number of consecutive steps of falling energy it is raised by the same
+ * factor again. The timestep always stays between the final and the initial
+ * value. This follows the adaptive step length control of Y. Hu,
+ * <i>Efficient and high quality force-directed graph drawing</i>, The
+ * Mathematica Journal 10(1), 2005.
+ */
+public class AdaptiveCoolingSchedule implements CoolingSchedule {
+
+	public static final double DEFAULT_FACTOR = 0.9;
+	public static final int DEFAULT_PROGRESS_STEPS = 5;
+
+	private final long initial, last;
+	private final double factor;
+	private final int progressSteps;
+	private double timestep;
+	private float energy;
+	private int progress;
+
+	/**
+	 * Create a new AdaptiveCoolingSchedule with default parameters.
+	 * @param initial the timestep of the first step, and the longest one
+	 * @param last the shortest timestep
+	 */
+	public AdaptiveCoolingSchedule(long initial, long last) {
+		this(initial, last, DEFAULT_FACTOR, DEFAULT_PROGRESS_STEPS);
+	}
+
+	/**
+	 * Create a new AdaptiveCoolingSchedule.
+	 * @param initial the timestep of the first step, and the longest one
+	 * @param last the shortest timestep
+	 * @param factor the factor (between 0 and 1) by which the timestep is cut
+	 * @param progressSteps the number of steps of falling energy after which
+	 * the timestep is raised again
+	 */
+	public AdaptiveCoolingSchedule(long initial, long last, double factor, int progressSteps) {
+		if ( factor <= 0. || factor >= 1. )
+			throw new IllegalArgumentException("Factor must be between 0 and 1");
+		this.initial = initial;
+		this.last = last;
+		this.factor = factor;
+		this.progressSteps = progressSteps;
+		reset(1);
+	}
+
+	/**
+	 * @see prefuse.util.force.CoolingSchedule#reset(int)
+	 */
+	public void reset(int steps) {
+		timestep = initial;
+		energy = Float.POSITIVE_INFINITY;
+		progress = 0;
+	}
+
+	/**
+	 * @see prefuse.util.force.CoolingSchedule#nextTimestep()
+	 */
+	public long nextTimestep() {
+		return Math.round(timestep);
+	}
+
+	/**
+	 * @see prefuse.util.force.CoolingSchedule#update(float)
+	 */
+	public void update(float energy) {
+		if ( energy < this.energy ) {
+			if ( ++progress >= progressSteps ) {
+				progress = 0;
+				timestep = Math.min(initial, timestep / factor);
+			}
+		} else {
+			progress = 0;
+			timestep = Math.max(last, timestep * factor);
+		}
+		this.energy = energy;
+	}
+
+	@Override
+	public String toString() {
+		return "adaptive " + last + " to " + initial;
+	}
+
+} // end of class AdaptiveCoolingSchedule
@@ -16,9 +16,12 @@ public abstract class BoundaryWallForce extends AbstractForce {
 	public static final int IN_PROJECTION = 1;
 	public static final int OUT_PROJECTION = -1;
 	private static final double DEFAULT_SCALEFACTOR = 2.5;
+	// the most a variable wall may be scaled, relative to its initial gravitational constant
+	private static final float MAX_STRENGTH_SCALE = 1000f;
 
 	private boolean variableStrength;
 	private float scaleFactor;
+	private float maxStrength;
 
 	protected Point2D center;
 	protected Point2D dimensions;
@@ -35,6 +38,7 @@ public abstract class BoundaryWallForce extends AbstractForce {
 		this.center = center;
 		this.dimensions = dimensions;
 		params = new float[] { gravConst, gravConst };
+		this.maxStrength = Math.abs(gravConst) * MAX_STRENGTH_SCALE;
 		this.variableStrength = variableWall;
 		this.scaleFactor = (float) scaleFactor;
 	}
@@ -75,26 +79,44 @@ public abstract class BoundaryWallForce extends AbstractForce {
 
 	/** 
 	 * This method scales the strength of the wall force in the direction of @param dir, 
-	 * only if variableStrength is true
+	 * only if variableStrength is true. The strength is capped at MAX_STRENGTH_SCALE times
+	 * its initial value, as scaling it on every few projections would otherwise let it grow
+	 * until the forces of the wall overflow.
 	 */
 	public void scaleStrength(int dir) {
 		if(this.variableStrength) {
 			if(dir == IN_PROJECTION) 
-				params[IN_GRAVITATIONAL_CONST] *= scaleFactor;
+				params[IN_GRAVITATIONAL_CONST] = scaled(params[IN_GRAVITATIONAL_CONST]);
 			else if(dir == OUT_PROJECTION) 
-				params[OUT_GRAVITATIONAL_CONST] *= scaleFactor;
+				params[OUT_GRAVITATIONAL_CONST] = scaled(params[OUT_GRAVITATIONAL_CONST]);
 		}
 	}
 
+	/** Private method
+	 * @return @param gravConst scaled by the scale factor, capped at the maximal strength
+	 */
+	private float scaled(float gravConst) {
+		return Math.max(-maxStrength, Math.min(maxStrength, gravConst * scaleFactor));
+	}
+
 	/**
 	 * @see prefuse.util.force.Force#getForce(prefuse.util.force.ForceItem)
 	 */
-	public abstract void getForce(ForceItem item);	
+	public void getForce(ForceItem item) {
+		getForce(item.getStore(), item.getIndex());
+	}
+
+	/**
+	 * @see prefuse.util.force.Force#getForce(prefuse.util.force.ParticleStore, int)
+	 */
+	public abstract void getForce(ParticleStore store, int i);
 
 	/**
-	 * @return a random displacement 
+	 * @param i the index of the particle being displaced
+	 * @param salt distinguishes several displacements of the same particle
+	 * @return a small pseudo-random displacement, deterministic in its arguments
 	 */
-	protected float getRandDisplacement() {
-		return ((float)Math.random() - 1f) / 50.0f;
+	protected float getRandDisplacement(int i, int salt) {
+		return (jitter(i, salt) - 0.5f) / 50.0f;
 	}
 }
@@ -0,0 +1,71 @@
+package prefuse.util.force;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns the categories of a force simulation to dense int ids. The
+ * categories may be arbitrary objects, such as the raw values of a node
+ * attribute; once interned, every per-category lookup is a plain array
+ * index, and the table maps the ids back to the original values.
+ */
+public class CategoryTable {
+
+	/** The id of items without an interned category */
+	public static final int NONE = -1;
+
+	private final Map<Object, Integer> ids;
+	private final ArrayList<Object> values;
+
+	/**
+	 * Create a new, empty CategoryTable.
+	 */
+	public CategoryTable() {
+		ids = new HashMap<>();
+		values = new ArrayList<>();
+	}
+
+	/**
+	 * Get the id of a category, assigning the next free id if the category
+	 * has not been seen before.
+	 * @param category the category to intern, may be null
+	 * @return the id of the category
+	 */
+	public int intern(Object category) {
+		Integer id = ids.get(category);
+		if ( id == null ) {
+			id = values.size();
+			ids.put(category, id);
+			values.add(category);
+		}
+		return id;
+	}
+
+	/**
+	 * Get the id of a category without interning it.
+	 * @param category the category to look up
+	 * @return the id of the category, or {@link #NONE} if it was never interned
+	 */
+	public int getId(Object category) {
+		Integer id = ids.get(category);
+		return id == null ? NONE : id;
+	}
+
+	/**
+	 * Get the original value of an interned category.
+	 * @param id the id of the category
+	 * @return the category with that id
+	 */
+	public Object getCategory(int id) {
+		return values.get(id);
+	}
+
+	/**
+	 * @return the number of interned categories, one more than the highest id
+	 */
+	public int size() {
+		return values.size();
+	}
+
+} // end of class CategoryTable
@@ -0,0 +1,191 @@
+package prefuse.util.force;
+
+import java.util.Arrays;
+
+/**
+ * <p>Short-range force pushing apart items whose rectangles overlap. The items
+ * are bucketed by the cell of a uniform grid they fall in, the cells being as
+ * large as the largest item plus the padding, so the rectangles of two items
+ * can only overlap if their cells are adjacent. The grid is stored as a
+ * spatial hash: the cells are hashed into a table of about twice as many
+ * buckets as items and the items sorted by bucket, so it takes O(N) space and
+ * time to build however far apart the items are.</p>
+ *
+ * <p>Every item is pushed out of every rectangle it overlaps along the axis of
+ * least penetration, with a force proportional to the penetration depth. The
+ * force only reads the grid and writes the force slot of the given item, so
+ * the simulator evaluates it in parallel. It is meant to take over overlap
+ * removal from an {@link NBodyForce}, which can then run without avoidOverlap
+ * and with a looser theta for the global spreading of the items.</p>
+ */
+public class CollisionForce extends AbstractForce {
+
+	private static String[] pnames = new String[] {"CollisionStrength", "Padding"};
+
+	public static final float DEFAULT_STRENGTH = 0.01f;
+	public static final float DEFAULT_MIN_STRENGTH = 0.0f;
+	public static final float DEFAULT_MAX_STRENGTH = 1.0f;
+
+	public static final float DEFAULT_PADDING = 0f;
+	public static final float DEFAULT_MIN_PADDING = 0f;
+	public static final float DEFAULT_MAX_PADDING = 50f;
+
+	public static final int STRENGTH = 0;
+	public static final int PADDING = 1;
+
+	private ParticleStore store;
+	private float cellSize, minX, minY;
+	private int mask;
+	private int[] bucketStart = new int[0];
+	private int[] items = new int[0];
+	private int[] cells = new int[0];
+
+	/**
+	 * Create a new CollisionForce with default parameters.
+	 */
+	public CollisionForce() {
+		this(DEFAULT_STRENGTH, DEFAULT_PADDING);
+	}
+
+	/**
+	 * Create a new CollisionForce.
+	 * @param strength the force per unit of penetration depth
+	 * @param padding the distance kept free between the rectangles of two items
+	 */
+	public CollisionForce(float strength, float padding) {
+		params = new float[] {strength, padding};
+		minValues = new float[] {DEFAULT_MIN_STRENGTH, DEFAULT_MIN_PADDING};
+		maxValues = new float[] {DEFAULT_MAX_STRENGTH, DEFAULT_MAX_PADDING};
+	}
+
+	/**
+	 * Returns true.
+	 * @see prefuse.util.force.Force#isItemForce()
+	 */
+	public boolean isItemForce() {
+		return true;
+	}
+
+	/**
+	 * @see prefuse.util.force.AbstractForce#getParameterNames()
+	 */
+	protected String[] getParameterNames() {
+		return pnames;
+	}
+
+	/**
+	 * Bucket the items of the simulation into the spatial hash.
+	 * @param fsim the enclosing ForceSimulator
+	 */
+	public void init(ForceSimulator fsim) {
+		store = fsim.getParticleStore();
+		int n = store.size();
+		float[] location = store.location, dimensions = store.dimensions;
+		float largest = 0f;
+		minX = Float.MAX_VALUE;
+		minY = Float.MAX_VALUE;
+		for ( int i = 0; i < n; i++ ) {
+			largest = Math.max(largest, Math.max(dimensions[2*i], dimensions[2*i+1]));
+			minX = Math.min(minX, location[2*i]);
+			minY = Math.min(minY, location[2*i+1]);
+		}
+		cellSize = Math.max(largest + params[PADDING], 0.001f);
+
+		int buckets = Math.max(2, Integer.highestOneBit(Math.max(2*n-1, 1)) << 1);
+		mask = buckets - 1;
+		if ( bucketStart.length < buckets+1 )
+			bucketStart = new int[buckets+1];
+		if ( items.length < n ) {
+			items = new int[n];
+			cells = new int[n];
+		}
+
+		// sort the items by bucket, keeping their order within a bucket
+		Arrays.fill(bucketStart, 0, buckets+1, 0);
+		for ( int i = 0; i < n; i++ ) {
+			cells[i] = bucket(cell(location[2*i], minX), cell(location[2*i+1], minY));
+			bucketStart[cells[i]+1]++;
+		}
+		for ( int b = 0; b < buckets; b++ )
+			bucketStart[b+1] += bucketStart[b];
+		for ( int i = 0; i < n; i++ )
+			items[bucketStart[cells[i]]++] = i;
+		for ( int b = buckets; b > 0; b-- )
+			bucketStart[b] = bucketStart[b-1];
+		bucketStart[0] = 0;
+	}
+
+	private int cell(float coordinate, float min) {
+		return (int)((coordinate - min) / cellSize);
+	}
+
+	private int bucket(int cx, int cy) {
+		return ((cx * 73856093) ^ (cy * 19349663)) & mask;
+	}
+
+	/**
+	 * Calculates the collision force acting on the given item.
+	 * @param item the ForceItem for which to compute the force
+	 */
+	public void getForce(ForceItem item) {
+		getForce(item.getStore(), item.getIndex());
+	}
+
+	/**
+	 * Calculates the collision force acting on the given particle from the
+	 * particles of the cells adjacent to its own. Buckets shared by several
+	 * of these cells are visited once.
+	 * @param store the ParticleStore this force was initialized with
+	 * @param item the index of the particle for which to compute the force
+	 */
+	public void getForce(ParticleStore store, int item) {
+		float[] location = store.location, dimensions = store.dimensions, force = store.force;
+		float ix = location[2*item], iy = location[2*item+1];
+		float iw = dimensions[2*item], ih = dimensions[2*item+1];
+		float strength = params[STRENGTH], padding = params[PADDING];
+		int cx = cell(ix, minX), cy = cell(iy, minY);
+
+		for ( int c = 0; c < 9; c++ ) {
+			// skip buckets shared with a cell visited before, recomputing their ids
+			int b = bucket(cx + c/3 - 1, cy + c%3 - 1);
+			boolean seen = false;
+			for ( int v = 0; v < c && !seen; v++ )
+				seen = bucket(cx + v/3 - 1, cy + v%3 - 1) == b;
+			if ( seen ) continue;
+
+			for ( int k = bucketStart[b]; k < bucketStart[b+1]; k++ ) {
+				int other = items[k];
+				if ( other == item ) continue;
+				float dx = location[2*other] - ix;
+				float dy = location[2*other+1] - iy;
+				float px = (iw + dimensions[2*other]) / 2 + padding - Math.abs(dx);
+				float py = (ih + dimensions[2*other+1]) / 2 + padding - Math.abs(dy);
+				if ( px <= 0f || py <= 0f ) continue;
+
+				// push away from the other item along the axis of least penetration
+				if ( px < py )
+					force[2*item]   -= strength * px * direction(dx, item, other, 0);
+				else
+					force[2*item+1] -= strength * py * direction(dy, item, other, 1);
+			}
+		}
+	}
+
+	/**
+	 * Returns the sign of the offset of the other item along an axis. Items
+	 * level along the axis draw a pseudo-random sign shared by the pair and
+	 * take opposite sides of it, so that they are always pushed apart.
+	 * @param d the offset of the other item along the axis
+	 * @param item the index of the item pushed
+	 * @param other the index of the other item
+	 * @param axis the axis, 0 for x and 1 for y
+	 * @return -1 or 1
+	 */
+	private static float direction(float d, int item, int other, int axis) {
+		if ( d != 0f )
+			return d < 0 ? -1f : 1f;
+		float j = jitter(Math.min(item, other), 2*Math.max(item, other) + axis) < 0 ? -1f : 1f;
+		return item < other ? -j : j;
+	}
+
+} // end of class CollisionForce
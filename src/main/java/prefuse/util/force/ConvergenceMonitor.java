@@ -0,0 +1,263 @@
+package prefuse.util.force;
+
+import java.util.Arrays;
+
+/**
+ * Tracks how much a force simulation still changes from one step to the
+ * next, so that a layout can stop once it has settled. After every step of
+ * the {@link ForceSimulator} it is attached to, the monitor records the mean
+ * kinetic energy per item, the largest distance any item moved during the
+ * step and the number of projections reported since the previous step, e.g.
+ * items that had to be moved back into their boundary.
+ *
+ * <p>The simulation is considered converged once all three values stayed at
+ * or below their tolerances for a number of consecutive steps, the patience.
+ * Since a simulation without drag may keep oscillating forever, it is also
+ * converged once the mean energy of a window of that many steps changed by
+ * no more than a relative tolerance against the previous window, provided
+ * no step of the window moved an item farther than the displacement
+ * tolerance or reported more projections than tolerated. Items held at the
+ * speed limit or drifting steadily keep a constant energy too, but move.</p>
+ */
+public class ConvergenceMonitor {
+
+	public static final float DEFAULT_ENERGY_TOLERANCE = 1e-3f;
+	public static final float DEFAULT_DISPLACEMENT_TOLERANCE = 0.5f;
+	public static final int DEFAULT_PROJECTION_TOLERANCE = 0;
+	public static final int DEFAULT_PATIENCE = 10;
+	public static final float DEFAULT_PLATEAU_TOLERANCE = 0.02f;
+
+	private float energyTolerance;
+	private float displacementTolerance;
+	private int projectionTolerance;
+	private int patience;
+	private float plateauTolerance = DEFAULT_PLATEAU_TOLERANCE;
+
+	private float[] previous = new float[0];
+	private int previousCount = -1;
+	private int pendingProjections;
+
+	private float energy;
+	private float displacement;
+	private int projections;
+	private int steps;
+	private int quietSteps;
+	private double windowEnergy;
+	private double lastWindowEnergy = -1;
+	private boolean windowProjected;
+	private boolean windowMoved;
+	private boolean plateau;
+
+	/**
+	 * Create a new ConvergenceMonitor with default tolerances.
+	 */
+	public ConvergenceMonitor() {
+		this(DEFAULT_ENERGY_TOLERANCE, DEFAULT_DISPLACEMENT_TOLERANCE,
+				DEFAULT_PROJECTION_TOLERANCE, DEFAULT_PATIENCE);
+	}
+
+	/**
+	 * Create a new ConvergenceMonitor.
+	 * @param energyTolerance the mean kinetic energy per item below which
+	 * the simulation is considered at rest
+	 * @param displacementTolerance the largest distance any item may move
+	 * within a step of a simulation at rest
+	 * @param projectionTolerance the number of projections a step of a
+	 * simulation at rest may report
+	 * @param patience the number of consecutive steps at rest after which
+	 * the simulation is converged
+	 */
+	public ConvergenceMonitor(float energyTolerance, float displacementTolerance,
+			int projectionTolerance, int patience) {
+		if ( patience < 1 )
+			throw new IllegalArgumentException("Patience must be >= 1");
+		this.energyTolerance = energyTolerance;
+		this.displacementTolerance = displacementTolerance;
+		this.projectionTolerance = projectionTolerance;
+		this.patience = patience;
+	}
+
+	/**
+	 * Forget all recorded steps, e.g. when the forces of the simulation
+	 * change between layout phases.
+	 */
+	public void reset() {
+		previousCount = -1;
+		pendingProjections = 0;
+		energy = 0f;
+		displacement = 0f;
+		projections = 0;
+		steps = 0;
+		quietSteps = 0;
+		windowEnergy = 0;
+		lastWindowEnergy = -1;
+		windowProjected = false;
+		windowMoved = false;
+		plateau = false;
+	}
+
+	/**
+	 * Report projections made since the last step. They are attributed to
+	 * the next recorded step.
+	 * @param count the number of projections
+	 */
+	public void addProjections(int count) {
+		pendingProjections += count;
+	}
+
+	/**
+	 * Reorder the recorded locations along with the items of the simulation,
+	 * so that the next step measures the displacement of the same items.
+	 * @param order the permutation applied to the items, the item at index
+	 * <code>order[i]</code> having moved to index <code>i</code>
+	 */
+	void reorder(int[] order) {
+		if ( previousCount != order.length )
+			return;
+		float[] reordered = new float[previous.length];
+		for ( int i = 0; i < previousCount; i++ ) {
+			reordered[2*i] = previous[2*order[i]];
+			reordered[2*i+1] = previous[2*order[i]+1];
+		}
+		previous = reordered;
+	}
+
+	/**
+	 * Record a step of the simulation, once its items have been moved.
+	 * @param store the ParticleStore holding the items of the simulation
+	 */
+	public void update(ParticleStore store) {
+		int n = store.size();
+		float[] mass = store.mass, velocity = store.velocity, location = store.location;
+		boolean compare = (previousCount == n);
+		if ( previous.length < 2*n )
+			previous = Arrays.copyOf(previous, 2*n);
+
+		double e = 0;
+		float max = 0f;
+		for ( int i = 0; i < n; i++ ) {
+			int x = 2*i, y = x+1;
+			float vx = velocity[x], vy = velocity[y];
+			e += 0.5 * mass[i] * (vx*vx + vy*vy);
+			if ( compare ) {
+				float dx = location[x] - previous[x];
+				float dy = location[y] - previous[y];
+				float d = dx*dx + dy*dy;
+				if ( d > max ) max = d;
+			}
+		}
+		System.arraycopy(location, 0, previous, 0, 2*n);
+
+		energy = n == 0 ? 0f : (float)(e / n);
+		displacement = compare ? (float)Math.sqrt(max) : Float.POSITIVE_INFINITY;
+		projections = pendingProjections;
+		pendingProjections = 0;
+		previousCount = n;
+		steps++;
+
+		if ( energy <= energyTolerance && displacement <= displacementTolerance
+				&& projections <= projectionTolerance )
+			quietSteps++;
+		else
+			quietSteps = 0;
+
+		// compare the mean energy of consecutive windows of patience steps
+		windowEnergy += energy;
+		windowProjected |= projections > projectionTolerance;
+		windowMoved |= displacement > displacementTolerance;
+		if ( steps % patience == 0 ) {
+			double mean = windowEnergy / patience;
+			double scale = Math.max(mean, lastWindowEnergy);
+			plateau = lastWindowEnergy >= 0 && !windowProjected && !windowMoved
+					&& (scale == 0 || Math.abs(mean - lastWindowEnergy) <= plateauTolerance * scale);
+			lastWindowEnergy = mean;
+			windowEnergy = 0;
+			windowProjected = false;
+			windowMoved = false;
+		}
+	}
+
+	/**
+	 * @return true if the last recorded steps stayed within the tolerances
+	 * for at least the configured patience, or the energy has plateaued
+	 */
+	public boolean isConverged() {
+		return quietSteps >= patience || plateau;
+	}
+
+	/** @return the mean kinetic energy per item after the last step */
+	public float getKineticEnergy() {
+		return energy;
+	}
+
+	/** @return the largest distance any item moved during the last step */
+	public float getMaxDisplacement() {
+		return displacement;
+	}
+
+	/** @return the number of projections attributed to the last step */
+	public int getProjectionCount() {
+		return projections;
+	}
+
+	/** @return the number of steps recorded since the last reset */
+	public int getStepCount() {
+		return steps;
+	}
+
+	/** @return the number of consecutive steps at rest after which the simulation is converged */
+	public int getPatience() {
+		return patience;
+	}
+
+	/**
+	 * @param patience the number of consecutive steps at rest after which
+	 * the simulation is converged, at least one
+	 */
+	public void setPatience(int patience) {
+		if ( patience < 1 )
+			throw new IllegalArgumentException("Patience must be >= 1");
+		this.patience = patience;
+	}
+
+	/** @return the relative change of the mean energy between windows below which it has plateaued */
+	public float getPlateauTolerance() {
+		return plateauTolerance;
+	}
+
+	/** @param tolerance the relative change of the mean energy between windows below which it has plateaued */
+	public void setPlateauTolerance(float tolerance) {
+		plateauTolerance = tolerance;
+	}
+
+	/** @return the mean kinetic energy per item below which the simulation is at rest */
+	public float getEnergyTolerance() {
+		return energyTolerance;
+	}
+
+	/** @param tolerance the mean kinetic energy per item below which the simulation is at rest */
+	public void setEnergyTolerance(float tolerance) {
+		energyTolerance = tolerance;
+	}
+
+	/** @return the largest distance any item may move within a step at rest */
+	public float getDisplacementTolerance() {
+		return displacementTolerance;
+	}
+
+	/** @param tolerance the largest distance any item may move within a step at rest */
+	public void setDisplacementTolerance(float tolerance) {
+		displacementTolerance = tolerance;
+	}
+
+	/** @return the number of projections a step at rest may report */
+	public int getProjectionTolerance() {
+		return projectionTolerance;
+	}
+
+	/** @param tolerance the number of projections a step at rest may report */
+	public void setProjectionTolerance(int tolerance) {
+		projectionTolerance = tolerance;
+	}
+
+} // end of class ConvergenceMonitor
@@ -0,0 +1,30 @@
+package prefuse.util.force;
+
+/**
+ * Interface for cooling schedules, which choose the timestep of every step
+ * of a run of a force simulation. A run starts hot, with long timesteps that
+ * let the items travel far, and cools down towards short timesteps that only
+ * refine their placement.
+ */
+public interface CoolingSchedule {
+
+	/**
+	 * Start a new run.
+	 * @param steps the maximum number of steps of the run
+	 */
+	public void reset(int steps);
+
+	/**
+	 * Get the timestep of the next step of the run and advance the schedule.
+	 * @return the timestep to pass to the simulator
+	 */
+	public long nextTimestep();
+
+	/**
+	 * Report the state of the simulation after a step. Schedules that do
+	 * not adapt to the simulation ignore it.
+	 * @param energy the mean kinetic energy per item after the step
+	 */
+	public void update(float energy);
+
+} // end of interface CoolingSchedule
@@ -50,8 +50,15 @@ public class DragForce extends AbstractForce {
      * @see prefuse.util.force.Force#getForce(prefuse.util.force.ForceItem)
      */
     public void getForce(ForceItem item) {
-        item.force[0] -= params[DRAG_COEFF]*item.velocity[0];
-        item.force[1] -= params[DRAG_COEFF]*item.velocity[1];
+        getForce(item.getStore(), item.getIndex());
+    }
+    
+    /**
+     * @see prefuse.util.force.Force#getForce(prefuse.util.force.ParticleStore, int)
+     */
+    public void getForce(ParticleStore store, int i) {
+        store.force[2*i]   -= params[DRAG_COEFF]*store.velocity[2*i];
+        store.force[2*i+1] -= params[DRAG_COEFF]*store.velocity[2*i+1];
     }
 
 } // end of class DragForce
@@ -27,17 +27,20 @@ public class EllipticalWallForce extends BoundaryWallForce {
 	}
 
 	/**
-	 * @see prefuse.util.force.Force#getForce(prefuse.util.force.ForceItem)
+	 * @see prefuse.util.force.Force#getForce(prefuse.util.force.ParticleStore, int)
 	 */
 	@Override
-	public void getForce(ForceItem item) {
-		float[] n = item.location;
-		float dx = (float) center.getX() - n[0];
-		float dy = (float) center.getY() - n[1];
+	public void getForce(ParticleStore store, int i) {
+		float[] n = store.location, forces = store.force;
+		int x = 2*i, y = x+1;
+		float mass = store.mass[i];
+		float itemWidth = store.dimensions[x], itemHeight = store.dimensions[y];
+		float dx = (float) center.getX() - n[x];
+		float dy = (float) center.getY() - n[y];
 
 		if(dx == 0f && dy == 0f) {
-			dx = getRandDisplacement();
-			dy = getRandDisplacement();
+			dx = getRandDisplacement(i, 0);
+			dy = getRandDisplacement(i, 1);
 		}
 
 		//initialize dimensions and displacements
@@ -53,24 +56,24 @@ public class EllipticalWallForce extends BoundaryWallForce {
 			float effectiveXWidth = (width) * (float) Math.sqrt(0.25f - heightRatio);
 			float effectiveYHeight = (height) * (float) Math.sqrt(0.25f - widthRatio);
 
-			float drLeft = effectiveXWidth - dx - item.dimensions[0] / 2f;
-			float drTop = effectiveYHeight - dy - item.dimensions[1] / 2f;
+			float drLeft = effectiveXWidth - dx - itemWidth / 2f;
+			float drTop = effectiveYHeight - dy - itemHeight / 2f;
 			if(drLeft < 0.01f) drLeft = 0.01f;
 			if(drTop < 0.01f) drTop = 0.01f;
-			float drRight = 2 * effectiveXWidth - drLeft - item.dimensions[0]; 
-			float drBottom = 2 * effectiveYHeight - drTop - item.dimensions[1];
+			float drRight = 2 * effectiveXWidth - drLeft - itemWidth; 
+			float drBottom = 2 * effectiveYHeight - drTop - itemHeight;
 			if(drRight < 0.01f) drRight = 0.01f;
 			if(drBottom < 0.01f) drBottom = 0.01f;
 
-			float vLeft = -gravConst * item.mass / (drLeft * drLeft * drLeft);
-			float vTop = -gravConst * item.mass / (drTop * drTop * drTop);
-			float vRight = gravConst * item.mass / (drRight * drRight * drRight);
-			float vBottom = gravConst * item.mass / (drBottom * drBottom * drBottom);
+			float vLeft = -gravConst * mass / (drLeft * drLeft * drLeft);
+			float vTop = -gravConst * mass / (drTop * drTop * drTop);
+			float vRight = gravConst * mass / (drRight * drRight * drRight);
+			float vBottom = gravConst * mass / (drBottom * drBottom * drBottom);
 
-			item.force[0] += vLeft;
-			item.force[1] += vTop;
-			item.force[0] += vRight;
-			item.force[1] += vBottom;
+			forces[x] += vLeft;
+			forces[y] += vTop;
+			forces[x] += vRight;
+			forces[y] += vBottom;
 		} else {
 			gravConst = params[OUT_GRAVITATIONAL_CONST];
 			double xVec = (dx * dx) / (width * width / 4.);
@@ -82,9 +85,9 @@ public class EllipticalWallForce extends BoundaryWallForce {
 			if(Math.abs(xDiff) < 0.01f) xDiff = 0.01f * (xDiff < 0 ? -1 : 1);
 			if(Math.abs(yDiff) < 0.01f) yDiff = 0.01f * (yDiff < 0 ? -1 : 1);
 			float resDiff = (float) Math.sqrt(xDiff * xDiff + yDiff * yDiff);
-			float force = -gravConst * item.mass / (resDiff * resDiff * resDiff);
-			item.force[0] += force * (xDiff < 0 ? -1 : 1);
-			item.force[1] += force * (yDiff < 0 ? -1 : 1);
+			float force = -gravConst * mass / (resDiff * resDiff * resDiff);
+			forces[x] += force * (xDiff < 0 ? -1 : 1);
+			forces[y] += force * (yDiff < 0 ? -1 : 1);
 		}
 	}
 }
\ No newline at end of file
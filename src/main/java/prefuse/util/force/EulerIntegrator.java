@@ -1,7 +1,5 @@
 package prefuse.util.force;
 
-import java.util.Iterator;
-
 /**
  * Updates velocity and position data using Euler's Method. This is the
  * simplest and fastest method, but is somewhat inaccurate and less smooth
@@ -17,20 +15,24 @@ public class EulerIntegrator implements Integrator {
      */
     public void integrate(ForceSimulator sim, long timestep) {
         float speedLimit = sim.getSpeedLimit();
-        Iterator iter = sim.getItems();
-        while ( iter.hasNext() ) {
-            ForceItem item = (ForceItem)iter.next();
-            item.location[0] += timestep * item.velocity[0];
-            item.location[1] += timestep * item.velocity[1];
-            float coeff = timestep / item.mass;
-            item.velocity[0] += coeff * item.force[0];
-            item.velocity[1] += coeff * item.force[1];
-            float vx = item.velocity[0];
-            float vy = item.velocity[1];
+        ParticleStore store = sim.getParticleStore();
+        float[] mass = store.mass, force = store.force;
+        float[] velocity = store.velocity, location = store.location;
+        boolean[] asleep = store.asleep;
+        for ( int i = 0, n = store.size(); i < n; i++ ) {
+            if ( asleep[i] ) continue;
+            int x = 2*i, y = x+1;
+            location[x] += timestep * velocity[x];
+            location[y] += timestep * velocity[y];
+            float coeff = timestep / mass[i];
+            velocity[x] += coeff * force[x];
+            velocity[y] += coeff * force[y];
+            float vx = velocity[x];
+            float vy = velocity[y];
             float v = (float)Math.sqrt(vx*vx+vy*vy);
             if ( v > speedLimit ) {
-                item.velocity[0] = speedLimit * vx / v;
-                item.velocity[1] = speedLimit * vy / v;
+                velocity[x] = speedLimit * vx / v;
+                velocity[y] = speedLimit * vy / v;
             }
         }
     }
@@ -0,0 +1,56 @@
+package prefuse.util.force;
+
+/**
+ * Cooling schedule that lowers the timestep geometrically from its initial
+ * to its final value over the course of a run, multiplying it by the same
+ * factor at every step. It cools quickly at first and then spends most of
+ * the run at short timesteps.
+ */
+public class ExponentialCoolingSchedule implements CoolingSchedule {
+
+	private final long initial, last;
+	private double timestep, factor;
+
+	/**
+	 * Create a new ExponentialCoolingSchedule.
+	 * @param initial the timestep of the first step, greater than zero
+	 * @param last the timestep of the last step, greater than zero
+	 */
+	public ExponentialCoolingSchedule(long initial, long last) {
+		if ( initial <= 0 || last <= 0 )
+			throw new IllegalArgumentException("Timesteps must be > 0");
+		this.initial = initial;
+		this.last = last;
+		reset(1);
+	}
+
+	/**
+	 * @see prefuse.util.force.CoolingSchedule#reset(int)
+	 */
+	public void reset(int steps) {
+		timestep = initial;
+		factor = steps <= 1 ? 1. : Math.pow(last / (double) initial, 1. / (steps-1));
+	}
+
+	/**
+	 * @see prefuse.util.force.CoolingSchedule#nextTimestep()
+	 */
+	public long nextTimestep() {
+		long t = Math.round(timestep);
+		timestep = factor < 1. ? Math.max(last, timestep * factor) : Math.min(last, timestep * factor);
+		return t;
+	}
+
+	/**
+	 * Ignored, the schedule only depends on the step.
+	 * @see prefuse.util.force.CoolingSchedule#update(float)
+	 */
+	public void update(float energy) {
+	}
+
+	@Override
+	public String toString() {
+		return "exponential " + initial + " to " + last;
+	}
+
+} // end of class ExponentialCoolingSchedule
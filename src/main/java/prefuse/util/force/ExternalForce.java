@@ -0,0 +1,86 @@
+package prefuse.util.force;
+
+import java.util.Arrays;
+
+/**
+ * Applies a fixed force vector to every item, set from outside the
+ * simulation. It is used to couple a simulation to items it does not hold,
+ * such as the far ends of springs leading into another simulation: the
+ * coupling forces are computed once per synchronization round and then held
+ * constant while the simulation steps.
+ */
+public class ExternalForce extends AbstractForce {
+
+    private static String[] pnames = new String[0];
+
+    private float[] forces = new float[0];
+    private int count;
+
+    /**
+     * Returns true.
+     * @see prefuse.util.force.Force#isItemForce()
+     */
+    public boolean isItemForce() {
+        return true;
+    }
+
+    /**
+     * @see prefuse.util.force.AbstractForce#getParameterNames()
+     */
+    protected String[] getParameterNames() {
+        return pnames;
+    }
+
+    /**
+     * Set the forces applied to the items.
+     * @param src the (x, y) force of every item, interleaved as in a
+     * {@link ParticleStore} force column
+     * @param n the number of items
+     */
+    public void setForces(float[] src, int n) {
+        if ( forces.length < 2*n )
+            forces = new float[2*n];
+        System.arraycopy(src, 0, forces, 0, 2*n);
+        count = n;
+    }
+
+    /**
+     * Stop applying any force.
+     */
+    public void clear() {
+        Arrays.fill(forces, 0, 2*count, 0f);
+        count = 0;
+    }
+
+    /**
+     * Reorder the forces applied to the items along with the items.
+     * @see prefuse.util.force.Force#reorder(int[])
+     */
+    public void reorder(int[] order) {
+        float[] reordered = new float[forces.length];
+        for ( int i = 0; i < count; i++ ) {
+            if ( order[i] >= count ) continue;
+            reordered[2*i]   = forces[2*order[i]];
+            reordered[2*i+1] = forces[2*order[i]+1];
+        }
+        forces = reordered;
+    }
+
+    /**
+     * @see prefuse.util.force.Force#getForce(prefuse.util.force.ForceItem)
+     */
+    public void getForce(ForceItem item) {
+        getForce(item.getStore(), item.getIndex());
+    }
+
+    /**
+     * @see prefuse.util.force.Force#getForce(prefuse.util.force.ParticleStore, int)
+     */
+    public void getForce(ParticleStore store, int i) {
+        if ( i < count ) {
+            store.force[2*i]   += forces[2*i];
+            store.force[2*i+1] += forces[2*i+1];
+        }
+    }
+
+} // end of class ExternalForce
@@ -77,6 +77,27 @@ public interface Force {
      */
     public void setMaxValue(int i, float val);
     
+    /**
+     * Returns the number of simulation steps over which the far field of
+     * this force function stays valid. An item force with an interval
+     * greater than one has its far field evaluated at the start of every
+     * interval-th step only, and the force it contributed to every item is
+     * reused in between; its near field is evaluated every time. Spring
+     * forces and forces routed to a category are evaluated every time.
+     * @return the update interval, at least one
+     * @see #getFarForce(ParticleStore, int)
+     */
+    public int getUpdateInterval();
+    
+    /**
+     * Notifies this force function that the particles of the simulation
+     * were reordered in their store, so that any state it keeps per
+     * particle index across evaluations can follow its particles.
+     * @param order the permutation applied, the particle at index
+     * <code>order[i]</code> having moved to index <code>i</code>
+     */
+    public void reorder(int[] order);
+    
     /**
      * Indicates if this force function will compute forces
      * on Spring instances.
@@ -97,6 +118,39 @@ public interface Force {
      */
     public void getForce(ForceItem item);
     
+    /**
+     * Updates the force calculation on the given particle of a
+     * ParticleStore. This is the path used by the ForceSimulator; it reads
+     * and writes the store's columns directly. When the simulator runs with
+     * more than one thread this method is called concurrently for distinct
+     * particles, so implementations must only write the force slot of the
+     * given particle and must not depend on the order of the calls.
+     * @param store the ParticleStore holding the particle
+     * @param i the index of the particle on which to compute updated forces
+     */
+    public void getForce(ParticleStore store, int i);
+    
+    /**
+     * Updates the force calculation on the given particle with the far
+     * field of this force only, the part reused over the update interval.
+     * It is followed by a call to {@link #getNearForce(ParticleStore, int)}
+     * for the same particle, which adds the rest of the force and may rely
+     * on what this call recorded. The same threading rules as for
+     * {@link #getForce(ParticleStore, int)} apply.
+     * @param store the ParticleStore holding the particle
+     * @param i the index of the particle on which to compute updated forces
+     */
+    public void getFarForce(ParticleStore store, int i);
+    
+    /**
+     * Updates the force calculation on the given particle with the near
+     * field of this force only, the part evaluated every time, including
+     * the evaluations reusing the far field.
+     * @param store the ParticleStore holding the particle
+     * @param i the index of the particle on which to compute updated forces
+     */
+    public void getNearForce(ParticleStore store, int i);
+    
     /**
      * Updates the force calculation on the given Spring. The ForceItems
      * attached to Spring will have their force values updated appropriately.
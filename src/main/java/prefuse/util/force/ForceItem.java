@@ -1,68 +1,275 @@
 package prefuse.util.force;
 
-import java.awt.geom.Point2D;
-
 /**
  * Represents a point particle in a force simulation, maintaining values for
- * mass, forces, velocity, and position.
+ * mass, forces, velocity, and position. A ForceItem held by a simulation is a
+ * view onto one row of a {@link ParticleStore}; the values themselves live in
+ * the store's flat columns so that forces and integrators can walk them
+ * without chasing pointers. An item not held by any simulation keeps its
+ * values in plain fields, which are copied into a store when it is added to
+ * a simulation and back when it is removed.
  *
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class ForceItem implements Cloneable {
-    
+
+    /** The store holding the values of this ForceItem, null if none does. */
+    ParticleStore store;
+    /** The row of this ForceItem within its store. */
+    int index;
+
+    // the values of this ForceItem while no store holds them
+    private float mass = 1.0f;
+    private float x, y, prevX, prevY, vx, vy, fx, fy, width, height;
+    private int categoryId = CategoryTable.NONE;
+
     /**
      * Create a new ForceItem.
      */
     public ForceItem() {
-        mass = 1.0f;
-        force = new float[] { 0.f, 0.f };
-        velocity = new float[] { 0.f, 0.f };
-        location = new float[] { 0.f, 0.f };
-        plocation = new float[] { 0.f, 0.f };
-        k = new float[4][2];
-        l = new float[4][2];
-        dimensions = new float[]{0.f, 0.f};
-        category = new Object();
-    }
-    
+    }
+
     /**
-     * Clone a ForceItem.
+     * Clone a ForceItem. The clone is not held by any simulation.
      * @see java.lang.Object#clone()
      */
     public Object clone() {
         ForceItem item = new ForceItem();
-        item.mass = this.mass;
-        System.arraycopy(force,0,item.force,0,2);
-        System.arraycopy(velocity,0,item.velocity,0,2);
-        System.arraycopy(location,0,item.location,0,2);
-        System.arraycopy(plocation,0,item.plocation,0,2);
-        System.arraycopy(dimensions,0,item.dimensions,0,2); //clone dimension 
-        for ( int i=0; i<k.length; ++i ) {
-            System.arraycopy(k[i],0,item.k[i],0,2);
-            System.arraycopy(l[i],0,item.l[i],0,2);
-        }
+        item.setMass(getMass());
+        item.setLocation(getX(), getY());
+        item.setPrevLocation(getPrevX(), getPrevY());
+        item.setVelocity(getVelocityX(), getVelocityY());
+        item.setForce(getForceX(), getForceY());
+        item.setDimensions(getWidth(), getHeight());
+        item.setCategoryId(getCategoryId());
+        item.category = category;
         return item;
     }
-    
-    /** The mass value of this ForceItem. */
-    public float mass;
-    /** The values of the forces acting on this ForceItem. */
-    public float[] force;
-    /** The velocity values of this ForceItem. */
-    public float[] velocity;
-    /** The location values of this ForceItem. */
-    public float[] location;
-    /** The previous location values of this ForceItem. */
-    public float[] plocation;
-    /** Temporary variables for Runge-Kutta integration */
-    public float[][] k;
-    /** Temporary variables for Runge-Kutta integration */
-    public float[][] l;
-    /** Holds the dimensions of the node corresponding to this force item*/
-    public float[] dimensions;
+
+    /**
+     * Copy the values held in the fields of this ForceItem into a row of a
+     * store, which is about to hold them.
+     */
+    void storeFields(ParticleStore dst, int i) {
+        dst.mass[i] = mass;
+        dst.location[2*i] = x;
+        dst.location[2*i+1] = y;
+        dst.plocation[2*i] = prevX;
+        dst.plocation[2*i+1] = prevY;
+        dst.velocity[2*i] = vx;
+        dst.velocity[2*i+1] = vy;
+        dst.force[2*i] = fx;
+        dst.force[2*i+1] = fy;
+        dst.dimensions[2*i] = width;
+        dst.dimensions[2*i+1] = height;
+        dst.category[i] = categoryId;
+    }
+
+    /**
+     * Copy the values of this ForceItem out of its store into its fields and
+     * unbind it from the store, which no longer holds it.
+     */
+    void loadFields() {
+        ParticleStore src = store;
+        int i = index;
+        mass = src.mass[i];
+        x = src.location[2*i];
+        y = src.location[2*i+1];
+        prevX = src.plocation[2*i];
+        prevY = src.plocation[2*i+1];
+        vx = src.velocity[2*i];
+        vy = src.velocity[2*i+1];
+        fx = src.force[2*i];
+        fy = src.force[2*i+1];
+        width = src.dimensions[2*i];
+        height = src.dimensions[2*i+1];
+        categoryId = src.category[i];
+        store = null;
+        index = 0;
+    }
+
     /** Holds the particular category of the node corresponding to this force item*/
     public Object category;
-        
+
+    /**
+     * @return the interned id of the category of this ForceItem, or
+     * {@link CategoryTable#NONE} if it has not been interned
+     */
+    public int getCategoryId() {
+        return store == null ? categoryId : store.category[index];
+    }
+
+    /**
+     * Set the interned id of the category of this ForceItem.
+     * @param id the id of the category within the simulation's CategoryTable
+     */
+    public void setCategoryId(int id) {
+        if ( store == null ) {
+            categoryId = id;
+            return;
+        }
+        store.category[index] = id;
+    }
+
+    /**
+     * @return the ParticleStore currently holding the values of this
+     * ForceItem. An item not held by any simulation is moved into a store
+     * of its own first.
+     */
+    public ParticleStore getStore() {
+        if ( store == null )
+            new ParticleStore(1).hold(this);
+        return store;
+    }
+
+    /**
+     * @return the row of this ForceItem within its ParticleStore
+     * @see #getStore()
+     */
+    public int getIndex() {
+        getStore();
+        return index;
+    }
+
+    /** @return the mass value of this ForceItem */
+    public float getMass() {
+        return store == null ? mass : store.mass[index];
+    }
+
+    /** @param mass the new mass value of this ForceItem */
+    public void setMass(float mass) {
+        if ( store == null ) {
+            this.mass = mass;
+            return;
+        }
+        store.mass[index] = mass;
+    }
+
+    /** @return the x location of this ForceItem */
+    public float getX() {
+        return store == null ? x : store.location[2*index];
+    }
+
+    /** @return the y location of this ForceItem */
+    public float getY() {
+        return store == null ? y : store.location[2*index+1];
+    }
+
+    /**
+     * Set the location of this ForceItem.
+     * @param x the new x location
+     * @param y the new y location
+     */
+    public void setLocation(float x, float y) {
+        if ( store == null ) {
+            this.x = x;
+            this.y = y;
+            return;
+        }
+        store.location[2*index] = x;
+        store.location[2*index+1] = y;
+    }
+
+    /** @return the previous x location of this ForceItem */
+    public float getPrevX() {
+        return store == null ? prevX : store.plocation[2*index];
+    }
+
+    /** @return the previous y location of this ForceItem */
+    public float getPrevY() {
+        return store == null ? prevY : store.plocation[2*index+1];
+    }
+
+    /**
+     * Set the previous location of this ForceItem.
+     * @param x the new previous x location
+     * @param y the new previous y location
+     */
+    public void setPrevLocation(float x, float y) {
+        if ( store == null ) {
+            prevX = x;
+            prevY = y;
+            return;
+        }
+        store.plocation[2*index] = x;
+        store.plocation[2*index+1] = y;
+    }
+
+    /** @return the x velocity of this ForceItem */
+    public float getVelocityX() {
+        return store == null ? vx : store.velocity[2*index];
+    }
+
+    /** @return the y velocity of this ForceItem */
+    public float getVelocityY() {
+        return store == null ? vy : store.velocity[2*index+1];
+    }
+
+    /**
+     * Set the velocity of this ForceItem.
+     * @param vx the new x velocity
+     * @param vy the new y velocity
+     */
+    public void setVelocity(float vx, float vy) {
+        if ( store == null ) {
+            this.vx = vx;
+            this.vy = vy;
+            return;
+        }
+        store.velocity[2*index] = vx;
+        store.velocity[2*index+1] = vy;
+    }
+
+    /** @return the x component of the force acting on this ForceItem */
+    public float getForceX() {
+        return store == null ? fx : store.force[2*index];
+    }
+
+    /** @return the y component of the force acting on this ForceItem */
+    public float getForceY() {
+        return store == null ? fy : store.force[2*index+1];
+    }
+
+    /**
+     * Set the force acting on this ForceItem.
+     * @param fx the new x component of the force
+     * @param fy the new y component of the force
+     */
+    public void setForce(float fx, float fy) {
+        if ( store == null ) {
+            this.fx = fx;
+            this.fy = fy;
+            return;
+        }
+        store.force[2*index] = fx;
+        store.force[2*index+1] = fy;
+    }
+
+    /** @return the width of the node corresponding to this ForceItem */
+    public float getWidth() {
+        return store == null ? width : store.dimensions[2*index];
+    }
+
+    /** @return the height of the node corresponding to this ForceItem */
+    public float getHeight() {
+        return store == null ? height : store.dimensions[2*index+1];
+    }
+
+    /**
+     * Set the dimensions of the node corresponding to this ForceItem.
+     * @param width the width of the node
+     * @param height the height of the node
+     */
+    public void setDimensions(float width, float height) {
+        if ( store == null ) {
+            this.width = width;
+            this.height = height;
+            return;
+        }
+        store.dimensions[2*index] = width;
+        store.dimensions[2*index+1] = height;
+    }
+
     /**
      * Checks a ForceItem to make sure its values are all valid numbers
      * (i.e., not NaNs).
@@ -70,12 +277,13 @@ public class ForceItem implements Cloneable {
      * @return true if all the values are valid, false otherwise
      */
     public static final boolean isValid(ForceItem item) {
-        return
-          !( Float.isNaN(item.location[0])  || Float.isNaN(item.location[1])  || 
-             Float.isNaN(item.plocation[0]) || Float.isNaN(item.plocation[1]) ||
-             Float.isNaN(item.velocity[0])  || Float.isNaN(item.velocity[1])  ||
-             Float.isNaN(item.dimensions[0]) || Float.isNaN(item.dimensions[1]) ||
-             Float.isNaN(item.force[0])     || Float.isNaN(item.force[1]) );
-    }
-    
+        if ( item.store != null )
+            return item.store.isValid(item.index);
+        float[] values = { item.x, item.y, item.prevX, item.prevY, item.vx, item.vy,
+                           item.width, item.height, item.fx, item.fy };
+        for ( int i = 0; i < values.length; i++ )
+            if ( Float.isNaN(values[i]) ) return false;
+        return true;
+    }
+
 } // end of class ForceItem
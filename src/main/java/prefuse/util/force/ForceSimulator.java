@@ -1,25 +1,103 @@
 package prefuse.util.force;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Manages a simulation of physical forces acting on bodies. To create a
  * custom ForceSimulator, add the desired {@link Force} functions and choose an
  * appropriate {@link Integrator}.
  *
+ * <p>When the thread count is greater than one, the item forces of
+ * {@link #accumulate()} are evaluated on a bounded ForkJoinPool. Items are
+ * split into fixed ranges and every item only ever writes its own force slot,
+ * so the results do not depend on the number of threads or on scheduling.
+ * Spring forces, which write to both endpoints, are always applied serially
+ * afterwards.</p>
+ *
+ * <p>Item forces may also be routed to a single category of items with
+ * {@link #addForce(Force, Object)}. A routed force is only evaluated for the
+ * items whose {@link ForceItem#category} matches, so forces that constrain one
+ * group of items, such as boundary walls, do not cost anything for the rest.
+ * Categories are interned to dense ids in the simulator's {@link CategoryTable};
+ * items whose category id is set are routed by that id alone, without
+ * hashing their category object.</p>
+ *
+ * <p>Items may be put to sleep once they have settled, see
+ * {@link #setSleeping(float, int)}. A sleeping item is skipped by the
+ * integrator and receives no item forces, but still exerts them, e.g. it
+ * keeps its mass in the n-body tree. It is woken when an item it is tied to
+ * by a spring moves, when a force is added to the simulation, when it is
+ * projected through {@link ParticleStore#wake(int)}, or by a periodic check
+ * of the forces acting on all sleeping items.</p>
+ *
+ * <p>Item forces whose {@link Force#getUpdateInterval() update interval} is
+ * greater than one, such as an n-body repulsion, have their far field
+ * evaluated at that rate only, counted in steps rather than in the force
+ * evaluations of the integrator. The far field of every item is cached when
+ * it is evaluated and added back from the cache by the evaluations in
+ * between, which skip initializing the force, while its near field, springs
+ * and routed forces such as walls are evaluated every time. The caches are
+ * refreshed as soon as items are added, removed or reordered. An item asleep
+ * while a cache is refreshed has its row marked stale, and is evaluated
+ * directly once it wakes.</p>
+ *
+ * <p>Items are held in the order they were added unless they are reordered
+ * along a space-filling curve, see {@link #setReorderInterval(int)}, which
+ * keeps items close to each other in space close to each other in memory.</p>
+ *
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class ForceSimulator {
 
-	private ArrayList items;
-	private ArrayList springs;
+	private ParticleStore store;
+	private ArrayList<Spring> springs;
 	private Force[] iforces;
+	private int[] iages;
+	private float[][] icaches;
+	private boolean[] irefresh;
 	private Force[] sforces;
 	private int iflen, sflen;
+	private CategoryTable categories;
+	private Force[][] categoryForces;
+	private ArrayList<Force> routedForces;
+	private Force[][] routes;
+	private boolean routesValid;
 	private Integrator integrator;
+	private ConvergenceMonitor monitor;
+	private boolean intermediate;
+	private float sleepTolerance;
+	private int sleepSteps;
+	private int sleepCheck;
+	private boolean wakeCheck;
+	private int reorderInterval;
+	private int reorderCheck;
 	public float speedLimit = 0.001f;
 
+	/** Items per fork/join leaf task below which no further splitting occurs */
+	private static final int MIN_GRAIN = 256;
+
+	/** The age of a cached item force that must be refreshed */
+	private static final int STALE = Integer.MAX_VALUE;
+
+	/** The bits per axis of the Morton keys items are reordered by */
+	private static final int KEY_BITS = 15;
+
+	/** Springs in the order of the first, then the second of their items */
+	private static final Comparator<Spring> SPRING_ORDER = new Comparator<Spring>() {
+		public int compare(Spring a, Spring b) {
+			int c = Integer.compare(Math.min(a.item1.index, a.item2.index), Math.min(b.item1.index, b.item2.index));
+			return c != 0 ? c : Integer.compare(Math.max(a.item1.index, a.item2.index), Math.max(b.item1.index, b.item2.index));
+		}
+	};
+
+	private int threadCount = 1;
+	private ForkJoinPool pool;
+
 	/**
 	 * Create a new, empty ForceSimulator. A RungeKuttaIntegrator is used
 	 * by default.
@@ -35,11 +113,18 @@ public class ForceSimulator {
 	public ForceSimulator(Integrator integr) {
 		integrator = integr;
 		iforces = new Force[5];
+		iages = new int[5];
+		icaches = new float[5][];
+		irefresh = new boolean[5];
 		sforces = new Force[5];
 		iflen = 0;
 		sflen = 0;
-		items = new ArrayList();
-		springs = new ArrayList();
+		store = new ParticleStore();
+		springs = new ArrayList<>();
+		categories = new CategoryTable();
+		categoryForces = new Force[0][];
+		routedForces = new ArrayList<>();
+		routesValid = false;
 	}
 
 	/**
@@ -60,6 +145,195 @@ public class ForceSimulator {
 		speedLimit = limit;
 	}
 
+	/**
+	 * Let items sleep once they have settled. An item is at rest for a step
+	 * if neither its velocity nor the force acting on it would move it
+	 * farther than the tolerance within the timestep; it falls asleep after
+	 * the given number of consecutive steps at rest. The forces acting on
+	 * the sleeping items are checked every that many steps, waking the items
+	 * they would move farther than the tolerance.
+	 * @param tolerance the distance an item at rest moves at most per step
+	 * @param steps the number of steps at rest before an item falls asleep,
+	 * zero (the default) to keep all items awake
+	 */
+	public void setSleeping(float tolerance, int steps) {
+		if ( tolerance < 0 || steps < 0 )
+			throw new IllegalArgumentException("Sleep tolerance and steps must be >= 0");
+		sleepTolerance = tolerance;
+		sleepSteps = steps;
+		sleepCheck = 0;
+		if ( steps == 0 )
+			store.wakeAll();
+	}
+
+	/**
+	 * @return the distance an item at rest moves at most per step
+	 */
+	public float getSleepTolerance() {
+		return sleepTolerance;
+	}
+
+	/**
+	 * @return the number of steps at rest before an item falls asleep, zero
+	 * if items never sleep
+	 */
+	public int getSleepSteps() {
+		return sleepSteps;
+	}
+
+	/**
+	 * @return the number of items currently awake
+	 */
+	public int getAwakeCount() {
+		int awake = 0;
+		boolean[] asleep = store.asleep;
+		for ( int i = 0, n = store.size(); i < n; i++ )
+			if ( !asleep[i] ) awake++;
+		return awake;
+	}
+
+	/**
+	 * Reorder the items every given number of steps, starting with the
+	 * first step, see {@link #reorder()}.
+	 * @param steps the number of steps between two reorderings, zero (the
+	 * default) to keep the items in the order they were added
+	 */
+	public void setReorderInterval(int steps) {
+		if ( steps < 0 )
+			throw new IllegalArgumentException("Reorder interval must be >= 0");
+		reorderInterval = steps;
+		reorderCheck = 0;
+	}
+
+	/**
+	 * @return the number of steps between two reorderings of the items,
+	 * zero if they are never reordered
+	 */
+	public int getReorderInterval() {
+		return reorderInterval;
+	}
+
+	/**
+	 * Sort the items in the particle store by the Morton key of their
+	 * location, and the springs by the index of their items. Forces that walk
+	 * the items through space, such as the n-body tree, and the springs then
+	 * read the store mostly in order rather than all over. The items stay
+	 * bound to their ForceItem views; the routes, the forces and the
+	 * convergence monitor are reordered along with them, and the cached item
+	 * forces are refreshed on the next evaluation.
+	 */
+	public void reorder() {
+		int n = store.size();
+		if ( n < 2 )
+			return;
+		float[] location = store.location;
+		float x1 = Float.MAX_VALUE, y1 = Float.MAX_VALUE;
+		float x2 = -Float.MAX_VALUE, y2 = -Float.MAX_VALUE;
+		for ( int i = 0; i < n; i++ ) {
+			float x = location[2*i], y = location[2*i+1];
+			if ( x < x1 ) x1 = x;
+			if ( y < y1 ) y1 = y;
+			if ( x > x2 ) x2 = x;
+			if ( y > y2 ) y2 = y;
+		}
+		float cells = (1 << KEY_BITS) - 1;
+		float sx = cells / Math.max(x2-x1, Float.MIN_NORMAL);
+		float sy = cells / Math.max(y2-y1, Float.MIN_NORMAL);
+
+		// sort the items by key, the index in the low bits breaking ties
+		long[] keys = new long[n];
+		for ( int i = 0; i < n; i++ ) {
+			long key = interleave((int)((location[2*i]-x1)*sx))
+					| interleave((int)((location[2*i+1]-y1)*sy)) << 1;
+			keys[i] = key << 32 | i;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[n];
+		boolean moved = false;
+		for ( int i = 0; i < n; i++ ) {
+			order[i] = (int)keys[i];
+			moved |= order[i] != i;
+		}
+
+		if ( moved ) {
+			store.permute(order);
+			// the state cached forces keep from their last init is indexed by the old order
+			Arrays.fill(iages, 0, iflen, STALE);
+			if ( routesValid ) {
+				Force[][] reordered = new Force[routes.length][];
+				for ( int i = 0; i < n; i++ )
+					reordered[i] = routes[order[i]];
+				routes = reordered;
+			}
+			for ( int f = 0; f < iflen; f++ )
+				iforces[f].reorder(order);
+			for ( int f = 0; f < sflen; f++ )
+				sforces[f].reorder(order);
+			for ( int f = 0; f < routedForces.size(); f++ )
+				routedForces.get(f).reorder(order);
+			if ( monitor != null )
+				monitor.reorder(order);
+		}
+		springs.sort(SPRING_ORDER);
+	}
+
+	/**
+	 * Spread the low KEY_BITS bits of a value to the even bits of the result.
+	 */
+	private static long interleave(int v) {
+		long x = v & ((1 << KEY_BITS) - 1);
+		x = (x | (x << 8)) & 0x00ff00ffL;
+		x = (x | (x << 4)) & 0x0f0f0f0fL;
+		x = (x | (x << 2)) & 0x33333333L;
+		x = (x | (x << 1)) & 0x55555555L;
+		return x;
+	}
+
+	/**
+	 * Get the number of threads used to accumulate item forces.
+	 * @return the thread count
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Set the number of threads used to accumulate item forces. A value of
+	 * one (the default) evaluates all forces on the calling thread.
+	 * @param threads the number of threads to use, at least one
+	 */
+	public void setThreadCount(int threads) {
+		if ( threads < 1 )
+			throw new IllegalArgumentException("Thread count must be >= 1");
+		if ( threads != threadCount )
+			shutdown();
+		threadCount = threads;
+	}
+
+	/**
+	 * Release the worker threads used for parallel accumulation. The
+	 * simulator remains usable and recreates its pool when needed.
+	 */
+	public void shutdown() {
+		if ( pool != null ) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Get the pool used for parallel work, creating it if necessary. Forces
+	 * may use it in their init() method to parallelize their own setup.
+	 * @return the pool, or null if this simulator runs on a single thread
+	 */
+	ForkJoinPool getPool() {
+		if ( threadCount <= 1 )
+			return null;
+		if ( pool == null )
+			pool = new ForkJoinPool(threadCount);
+		return pool;
+	}
+
 	/**
 	 * Get the Integrator used by this simulator.
 	 * @return the Integrator
@@ -76,12 +350,29 @@ public class ForceSimulator {
 		integrator = intgr;
 	}
 
+	/**
+	 * Get the ConvergenceMonitor that records every step of this simulator.
+	 * @return the ConvergenceMonitor, or null if none is attached
+	 */
+	public ConvergenceMonitor getConvergenceMonitor() {
+		return monitor;
+	}
+
+	/**
+	 * Attach a ConvergenceMonitor that records every step of this simulator.
+	 * @param monitor the ConvergenceMonitor to use, or null to detach it
+	 */
+	public void setConvergenceMonitor(ConvergenceMonitor monitor) {
+		this.monitor = monitor;
+	}
+
 	/**
 	 * Clear this simulator, removing all ForceItem and Spring instances
 	 * for the simulator.
 	 */
 	public void clear() {
-		items.clear();
+		store.clear();
+		routesValid = false;
 		Iterator siter = springs.iterator();
 		Spring.SpringFactory f = Spring.getFactory();
 		while ( siter.hasNext() )
@@ -94,13 +385,18 @@ public class ForceSimulator {
 	 * @param f the Force function to add
 	 */
 	public void addForce(Force f) {
+		store.wakeAll();
 		if ( f.isItemForce() ) {
 			if ( iforces.length == iflen ) {
 				// resize necessary
 				Force[] newf = new Force[iflen+10];
 				System.arraycopy(iforces, 0, newf, 0, iforces.length);
 				iforces = newf;
+				iages = Arrays.copyOf(iages, iflen+10);
+				icaches = Arrays.copyOf(icaches, iflen+10);
+				irefresh = Arrays.copyOf(irefresh, iflen+10);
 			}
+			iages[iflen] = STALE;
 			iforces[iflen++] = f;
 		}
 		if ( f.isSpringForce() ) {
@@ -115,22 +411,95 @@ public class ForceSimulator {
 	}
 
 	/**
-	 * Get an array of all the Force functions used in this simulator.
+	 * Add a new item Force function to the simulator that only acts on the
+	 * items of the given category. The same force may be routed to several
+	 * categories by adding it once per category.
+	 * @param f the item Force function to add
+	 * @param category the category of the items the force acts on
+	 */
+	public void addForce(Force f, Object category) {
+		addForce(f, categories.intern(category));
+	}
+
+	/**
+	 * Add a new item Force function to the simulator that only acts on the
+	 * items of the given interned category.
+	 * @param f the item Force function to add
+	 * @param category the id of the category within this simulator's
+	 * CategoryTable
+	 * @see #getCategories()
+	 */
+	public void addForce(Force f, int category) {
+		if ( !f.isItemForce() )
+			throw new IllegalArgumentException("Only item forces can be routed to a category");
+		store.wakeAll();
+		if ( category < 0 )
+			throw new IllegalArgumentException("Category ids must be >= 0");
+		if ( category >= categoryForces.length )
+			categoryForces = Arrays.copyOf(categoryForces, category+1);
+		Force[] forces = categoryForces[category];
+		if ( forces == null ) {
+			forces = new Force[] { f };
+		} else {
+			forces = Arrays.copyOf(forces, forces.length+1);
+			forces[forces.length-1] = f;
+		}
+		categoryForces[category] = forces;
+		if ( !routedForces.contains(f) )
+			routedForces.add(f);
+		routesValid = false;
+	}
+
+	/**
+	 * Get an array of all the Force functions used in this simulator,
+	 * including the forces routed to a category.
 	 * @return an array of Force functions
 	 */
 	public Force[] getForces() {
-		Force[] rv = new Force[iflen+sflen];
+		Force[] rv = new Force[iflen+sflen+routedForces.size()];
 		System.arraycopy(iforces, 0, rv, 0, iflen);
 		System.arraycopy(sforces, 0, rv, iflen, sflen);
+		for ( int i = 0; i < routedForces.size(); i++ )
+			rv[iflen+sflen+i] = routedForces.get(i);
 		return rv;
 	}
 
+	/**
+	 * Get the table interning the categories of this simulator.
+	 * @return the CategoryTable of this simulator
+	 */
+	public CategoryTable getCategories() {
+		return categories;
+	}
+
+	/**
+	 * Set the table interning the categories of this simulator, e.g. to
+	 * share one table between several simulators. This should be done
+	 * before any force is routed to a category.
+	 * @param table the CategoryTable to use
+	 */
+	public void setCategories(CategoryTable table) {
+		categories = table;
+		routesValid = false;
+	}
+
+	/**
+	 * Notify the simulator that the category of one or more of its items
+	 * has changed, so that the routed forces are looked up again.
+	 */
+	public void invalidateRoutes() {
+		routesValid = false;
+	}
+
 	/**
 	 * Add a ForceItem to the simulation.
 	 * @param item the ForceItem to add
 	 */
 	public void addItem(ForceItem item) {
-		items.add(item);
+		if ( item.store != store ) {
+			store.attach(item);
+			routesValid = false;
+		}
 	}
 
 	/**
@@ -138,7 +507,11 @@ public class ForceSimulator {
 	 * @param item the ForceItem to remove
 	 */
 	public boolean removeItem(ForceItem item) {
-		return items.remove(item);
+		if ( item.store != store )
+			return false;
+		store.remove(item.index);
+		routesValid = false;
+		return true;
 	}
 
 	/**
@@ -146,7 +519,26 @@ public class ForceSimulator {
 	 * @return an iterator over the ForceItems.
 	 */
 	public Iterator getItems() {
-		return items.iterator();
+		int n = store.size();
+		ForceItem[] items = new ForceItem[n];
+		for ( int i = 0; i < n; i++ )
+			items[i] = store.getItem(i);
+		return Arrays.asList(items).iterator();
+	}
+
+	/**
+	 * Get the ParticleStore holding the values of all registered ForceItems.
+	 * @return the ParticleStore of this simulator
+	 */
+	public ParticleStore getParticleStore() {
+		return store;
+	}
+
+	/**
+	 * @return the number of ForceItems registered with this simulator
+	 */
+	public int getItemCount() {
+		return store.size();
 	}
 
 	/**
@@ -199,32 +591,227 @@ public class ForceSimulator {
 	 * @param timestep the span of the timestep for which to run the simulator
 	 */
 	public void runSimulator(long timestep) {
+		if ( reorderInterval > 0 && reorderCheck++ % reorderInterval == 0 )
+			reorder();
+		wakeCheck = sleepSteps > 0 && ++sleepCheck % sleepSteps == 0;
 		accumulate();
+		wakeCheck = false;
+		if ( sleepSteps > 0 && sleepCheck % sleepSteps == 0 )
+			wakeForced(timestep);
 		integrator.integrate(this, timestep);
+		if ( sleepSteps > 0 )
+			updateSleep(timestep);
+		if ( monitor != null )
+			monitor.update(store);
 	}
 
 	/**
 	 * Accumulate all forces acting on the items in this simulation
 	 */
 	public void accumulate() {
-		for ( int i = 0; i < iflen; i++ )
-			iforces[i].init(this);
+		accumulate(false);
+	}
+
+	/**
+	 * Accumulate all forces acting on the items in this simulation.
+	 * Integrators that evaluate the forces several times per step flag the
+	 * evaluations after the first one as intermediate, which allows forces
+	 * to reuse state built for the start of the step.
+	 * @param intermediate true if this is an intermediate evaluation within
+	 * a single integration step
+	 */
+	public void accumulate(boolean intermediate) {
+		this.intermediate = intermediate;
+		int n = store.size();
+		if ( !routesValid ) {
+			resolveRoutes(n);
+			Arrays.fill(iages, 0, iflen, STALE);
+		}
+		for ( int i = 0; i < iflen; i++ ) {
+			int interval = iforces[i].getUpdateInterval();
+			if ( interval > 1 ) {
+				if ( icaches[i] == null || icaches[i].length < 2*n ) {
+					icaches[i] = new float[2*Math.max(n, 1)];
+					iages[i] = STALE;
+				}
+				// refresh once the cache has been reused for interval-1 steps;
+				// the intermediate evaluations of a step reuse it unless stale
+				if ( !intermediate || iages[i] == STALE ) {
+					irefresh[i] = iages[i] >= interval-1;
+					iages[i] = irefresh[i] ? 0 : iages[i]+1;
+				} else {
+					irefresh[i] = false;
+				}
+			} else {
+				icaches[i] = null;
+				irefresh[i] = true;
+			}
+			if ( irefresh[i] )
+				iforces[i].init(this);
+		}
 		for ( int i = 0; i < sflen; i++ )
 			sforces[i].init(this);
-		Iterator itemIter = items.iterator();
-		while ( itemIter.hasNext() ) {
-			ForceItem item = (ForceItem)itemIter.next();
-			item.force[0] = 0.0f; item.force[1] = 0.0f;
-			for ( int i = 0; i < iflen; i++)
-				iforces[i].getForce(item);
-		}
-		Iterator springIter = springs.iterator();
-		while ( springIter.hasNext() ) {
-			Spring s = (Spring)springIter.next();
+		for ( int i = 0; i < routedForces.size(); i++ )
+			routedForces.get(i).init(this);
+		Arrays.fill(store.force, 0, 2*n, 0.0f);
+		if ( threadCount > 1 && n >= 2*MIN_GRAIN ) {
+			int grain = Math.max(MIN_GRAIN, n / (4*threadCount));
+			getPool().invoke(new ItemForceTask(0, n, grain));
+		} else {
+			accumulateItems(0, n);
+		}
+		for ( int j = 0, len = springs.size(); j < len; j++ ) {
+			Spring s = springs.get(j);
 			for ( int i = 0; i < sflen; i++ ) {
 				sforces[i].getForce(s);
 			}
 		}
 	}
 
+	/**
+	 * @return true if the forces are currently being accumulated for an
+	 * intermediate stage of an integration step
+	 * @see #accumulate(boolean)
+	 */
+	public boolean isIntermediateEvaluation() {
+		return intermediate;
+	}
+
+	/**
+	 * Wake the sleeping items on which the forces of the last accumulation
+	 * would move them farther than the sleep tolerance within the timestep.
+	 */
+	private void wakeForced(long timestep) {
+		float[] mass = store.mass, force = store.force;
+		boolean[] asleep = store.asleep;
+		float reach = sleepTolerance / ((float)timestep*timestep);
+		for ( int i = 0, n = store.size(); i < n; i++ ) {
+			if ( !asleep[i] ) continue;
+			float fx = force[2*i], fy = force[2*i+1];
+			if ( (float)Math.sqrt(fx*fx+fy*fy) > reach * mass[i] )
+				store.wake(i);
+		}
+	}
+
+	/**
+	 * Count the steps at rest of the items awake after a step and put those
+	 * at rest for long enough to sleep, then wake the sleeping items tied by
+	 * a spring to an item that moved.
+	 */
+	private void updateSleep(long timestep) {
+		float[] mass = store.mass, force = store.force, velocity = store.velocity;
+		boolean[] asleep = store.asleep;
+		int[] rest = store.rest;
+		float speed = sleepTolerance / timestep;
+		float reach = sleepTolerance / ((float)timestep*timestep);
+		for ( int i = 0, n = store.size(); i < n; i++ ) {
+			if ( asleep[i] ) continue;
+			int x = 2*i, y = x+1;
+			float v = (float)Math.sqrt(velocity[x]*velocity[x]+velocity[y]*velocity[y]);
+			float f = (float)Math.sqrt(force[x]*force[x]+force[y]*force[y]);
+			if ( v > speed || f > reach * mass[i] ) {
+				rest[i] = 0;
+			} else if ( ++rest[i] >= sleepSteps ) {
+				asleep[i] = true;
+				velocity[x] = velocity[y] = 0f;
+			}
+		}
+		for ( int j = 0, len = springs.size(); j < len; j++ ) {
+			Spring s = springs.get(j);
+			if ( s.item1.store != store || s.item2.store != store )
+				continue;
+			int a = s.item1.index, b = s.item2.index;
+			if ( asleep[a] == asleep[b] )
+				continue;
+			int moving = asleep[a] ? b : a;
+			float vx = velocity[2*moving], vy = velocity[2*moving+1];
+			if ( (float)Math.sqrt(vx*vx+vy*vy) > speed )
+				store.wake(asleep[a] ? a : b);
+		}
+	}
+
+	/**
+	 * Apply every item force to the items in the range [from, to). Sleeping
+	 * items are skipped unless their forces are being checked. A cached force
+	 * either records what its far field adds to every item or adds the
+	 * recorded value, and then adds its near field; the rows of the items
+	 * skipped while it records are marked stale with a NaN, and recorded by
+	 * evaluating the far field for the item when next used.
+	 */
+	private void accumulateItems(int from, int to) {
+		boolean[] asleep = store.asleep;
+		float[] force = store.force;
+		for ( int item = from; item < to; item++ ) {
+			int x = 2*item, y = x+1;
+			if ( asleep[item] && !wakeCheck ) {
+				for ( int i = 0; i < iflen; i++ )
+					if ( icaches[i] != null && irefresh[i] )
+						icaches[i][x] = Float.NaN;
+				continue;
+			}
+			for ( int i = 0; i < iflen; i++) {
+				float[] cache = icaches[i];
+				if ( cache == null ) {
+					iforces[i].getForce(store, item);
+				} else if ( irefresh[i] || Float.isNaN(cache[x]) ) {
+					float fx = force[x], fy = force[y];
+					iforces[i].getFarForce(store, item);
+					cache[x] = force[x] - fx;
+					cache[y] = force[y] - fy;
+					iforces[i].getNearForce(store, item);
+				} else {
+					force[x] += cache[x];
+					force[y] += cache[y];
+					iforces[i].getNearForce(store, item);
+				}
+			}
+			Force[] routed = routes[item];
+			if ( routed != null )
+				for ( int i = 0; i < routed.length; i++ )
+					routed[i].getForce(store, item);
+		}
+	}
+
+	/**
+	 * Look up the routed forces of every item once, so that accumulation
+	 * only has to index an array.
+	 */
+	private void resolveRoutes(int n) {
+		if ( routes == null || routes.length < n )
+			routes = new Force[n][];
+		for ( int i = 0; i < n; i++ ) {
+			int id = store.category[i];
+			if ( id == CategoryTable.NONE && categoryForces.length > 0 )
+				id = categories.getId(store.getItem(i).category);
+			routes[i] = ( id >= 0 && id < categoryForces.length ) ? categoryForces[id] : null;
+		}
+		routesValid = true;
+	}
+
+	/**
+	 * Fork/join task splitting a range of items in halves until it is no
+	 * larger than the grain, then accumulating the item forces of that range.
+	 */
+	private final class ItemForceTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to, grain;
+
+		ItemForceTask(int from, int to, int grain) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if ( to - from <= grain ) {
+				accumulateItems(from, to);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new ItemForceTask(from, mid, grain), new ItemForceTask(mid, to, grain));
+			}
+		}
+	} // end of inner class ItemForceTask
+
 } // end of class ForceSimulator
@@ -0,0 +1,52 @@
+package prefuse.util.force;
+
+/**
+ * Cooling schedule that lowers the timestep linearly from its initial to its
+ * final value over the course of a run.
+ */
+public class LinearCoolingSchedule implements CoolingSchedule {
+
+	private final long initial, last;
+	private int steps, step;
+
+	/**
+	 * Create a new LinearCoolingSchedule.
+	 * @param initial the timestep of the first step
+	 * @param last the timestep of the last step
+	 */
+	public LinearCoolingSchedule(long initial, long last) {
+		this.initial = initial;
+		this.last = last;
+		reset(1);
+	}
+
+	/**
+	 * @see prefuse.util.force.CoolingSchedule#reset(int)
+	 */
+	public void reset(int steps) {
+		this.steps = steps;
+		step = 0;
+	}
+
+	/**
+	 * @see prefuse.util.force.CoolingSchedule#nextTimestep()
+	 */
+	public long nextTimestep() {
+		double t = steps <= 1 ? 0. : Math.min(1., step / (double)(steps-1));
+		step++;
+		return Math.round(initial + (last - initial) * t);
+	}
+
+	/**
+	 * Ignored, the schedule only depends on the step.
+	 * @see prefuse.util.force.CoolingSchedule#update(float)
+	 */
+	public void update(float energy) {
+	}
+
+	@Override
+	public String toString() {
+		return "linear " + initial + " to " + last;
+	}
+
+} // end of class LinearCoolingSchedule
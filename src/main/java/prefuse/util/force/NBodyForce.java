@@ -1,9 +1,6 @@
 package prefuse.util.force;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.Random;
 
 /**
  * <p>Force function which computes an n-body force such as gravity,
@@ -21,6 +18,26 @@ import java.util.Random;
  *   <li><a href="http://www.physics.gmu.edu/~large/lr_forces/desc/bh/bhdesc.html">Description of the Barnes-Hut algorithm</a>
  *   <li><a href="http://www.ifa.hawaii.edu/~barnes/treecode/treeguide.html">Joshua Barnes' recent implementation</a>
  * </ul></p>
+ *
+ * <p>The quadtree is stored in flat arrays indexed by node id (child indices,
+ * particle index, mass, center of mass and cell extent) held in an arena that
+ * grows to fit the item count and is reused by every call to {@link #init}.
+ * Both insertion and force evaluation walk the tree iteratively, so neither
+ * allocates nor recurses, however clustered the particles are.</p>
+ *
+ * <p>With {@link #setReuseTree(boolean)} enabled, the intermediate force
+ * evaluations of an integration step keep the tree built at the start of the
+ * step and only refit its masses and centers of mass to the new locations.
+ * The cells then lag behind the items by at most the distance reported by
+ * {@link #getDisplacement()}; once that exceeds the rebuild threshold the
+ * tree is built from scratch again.</p>
+ *
+ * <p>With an update interval greater than one, the simulator reuses the far
+ * field of the force, the attraction of the cells approximated by their
+ * center of mass, and evaluates its near field every time. The far field
+ * records the particles it meets individually, those held by leaves and by
+ * internal nodes, and the near field adds their force from their current
+ * locations.</p>
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
@@ -46,16 +63,33 @@ public class NBodyForce extends AbstractForce {
 	public static final float DEFAULT_MIN_THETA = 0.0f;
 	public static final float DEFAULT_MAX_THETA = 1.0f;
 
+	/** The default distance an item may move before a reused tree is rebuilt */
+	public static final float DEFAULT_REBUILD_THRESHOLD = 5f;
+
 	public static final int GRAVITATIONAL_CONST = 0;
 	public static final int MIN_DISTANCE = 1;
 	public static final int BARNES_HUT_THETA = 2;
 	private boolean avoidOverlap = false;
 
+	static final int ROOT = 0;
+	private static final int EMPTY = QuadTree.EMPTY;
+
 	private float xMin, xMax, yMin, yMax;
-	private QuadTreeNodeFactory factory = new QuadTreeNodeFactory();
-	private QuadTreeNode root;
+	ParticleStore store;
+	QuadTree tree;
+
+	private final ThreadLocal<int[]> stacks = new ThreadLocal<int[]>();
+
+	private boolean reuseTree = false;
+	private float rebuildThreshold = DEFAULT_REBUILD_THRESHOLD;
+	private float[] builtLocation = new float[0];
+	private ParticleStore builtStore;
+	private int builtCount = -1;
+	private float displacement;
 
-	private Random rand = new Random(12345678L); // deterministic randomness
+	// the particles every particle met individually in its last far field
+	private int[][] near = new int[0][];
+	private int[] nearCount = new int[0];
 
 	/**
 	 * Create a new NBodyForce with default parameters.
@@ -77,8 +111,9 @@ public class NBodyForce extends AbstractForce {
 		params = new float[] {gravConstant, minDistance, theta};
 		minValues = new float[] {DEFAULT_MIN_GRAV_CONSTANT, DEFAULT_MIN_DISTANCE, DEFAULT_MIN_THETA};
 		maxValues = new float[] {DEFAULT_MAX_GRAV_CONSTANT, DEFAULT_MAX_DISTANCE, DEFAULT_MAX_THETA};
-		root = factory.getQuadTreeNode();
 		this.avoidOverlap = avoidOverlap;
+		tree = new QuadTree(64);
+		clear();
 	}
 
 	/**
@@ -103,7 +138,7 @@ public class NBodyForce extends AbstractForce {
 	 * @param xMax the maximum x-coordinate
 	 * @param yMax the maximum y-coordinate
 	 */
-	private void setBounds(float xMin, float yMin, float xMax, float yMax) {
+	void setBounds(float xMin, float yMin, float xMax, float yMax) {
 		this.xMin = xMin;
 		this.yMin = yMin;
 		this.xMax = xMax;
@@ -111,19 +146,68 @@ public class NBodyForce extends AbstractForce {
 	}
 
 	/**
-	 * Clears the quadtree of all entries.
+	 * Clears the quadtree of all entries. The arena is kept for reuse.
 	 */
 	public void clear() {
-		clearHelper(root);
-		root = factory.getQuadTreeNode();
+		tree.clear();
+		tree.newNode(xMax - xMin);
 	}
 
-	private void clearHelper(QuadTreeNode n) {
-		for ( int i = 0; i < n.children.length; i++ ) {
-			if ( n.children[i] != null )
-				clearHelper(n.children[i]);
-		}
-		factory.reclaim(n);
+	/**
+	 * @return the number of nodes in the current quadtree
+	 */
+	public int getNodeCount() {
+		return tree.nodeCount;
+	}
+
+	/**
+	 * @return true if this force accounts for the dimensions of the items
+	 */
+	public boolean isAvoidOverlap() {
+		return avoidOverlap;
+	}
+
+	/**
+	 * Set whether intermediate evaluations of an integration step may refit
+	 * the tree built at the start of the step instead of rebuilding it.
+	 * @param reuse true to reuse the tree across sub-steps
+	 */
+	public void setReuseTree(boolean reuse) {
+		reuseTree = reuse;
+	}
+
+	/**
+	 * @return true if the tree is reused across the sub-steps of an
+	 * integration step
+	 */
+	public boolean isReuseTree() {
+		return reuseTree;
+	}
+
+	/**
+	 * Set the distance any item may move away from the location it had when
+	 * the tree was built before a reused tree is built from scratch.
+	 * @param threshold the rebuild threshold, in layout units
+	 */
+	public void setRebuildThreshold(float threshold) {
+		rebuildThreshold = threshold;
+	}
+
+	/**
+	 * @return the distance any item may move before a reused tree is rebuilt
+	 */
+	public float getRebuildThreshold() {
+		return rebuildThreshold;
+	}
+
+	/**
+	 * Get the largest distance any item had moved since the tree was last
+	 * built, as of the last call to {@link #init}. It is zero right after a
+	 * rebuild and bounds how far a refitted tree's cells are off.
+	 * @return the largest item displacement since the last rebuild
+	 */
+	public float getDisplacement() {
+		return displacement;
 	}
 
 	/**
@@ -133,16 +217,81 @@ public class NBodyForce extends AbstractForce {
 	 * @param fsim the enclosing ForceSimulator
 	 */
 	public void init(ForceSimulator fsim) {
+		store = fsim.getParticleStore();
+		int n = store.size();
+		if ( getUpdateInterval() > 1 && near.length < n ) {
+			near = Arrays.copyOf(near, n);
+			nearCount = Arrays.copyOf(nearCount, n);
+		}
+		if ( reuseTree && fsim.isIntermediateEvaluation() && canRefit(n) ) {
+			// keep the cells, only move the masses along with the items
+			tree.calcMass(store, 0, tree.nodeCount);
+			return;
+		}
+		buildTree(fsim);
+
+		// remember where the items were when the tree was built
+		if ( builtLocation.length < 2*n )
+			builtLocation = new float[2*n];
+		System.arraycopy(store.location, 0, builtLocation, 0, 2*n);
+		builtStore = store;
+		builtCount = n;
+		displacement = 0f;
+	}
+
+	/**
+	 * Build the quadtree from scratch over the items of the store.
+	 * @param fsim the enclosing ForceSimulator
+	 */
+	void buildTree(ForceSimulator fsim) {
+		int n = store.size();
+		// size the arena up front; it still grows if the items are clustered
+		tree.ensureCapacity(2*n+1);
+		computeBounds();
 		clear(); // clear internal state
 
-		// compute and squarify bounds of quadtree
+		// insert items into quadtree
+		for ( int i = 0; i < n; i++ )
+			insert(i);
+
+		// calculate magnitudes and centers of mass
+		tree.calcMass(store, 0, tree.nodeCount);
+	}
+
+	/**
+	 * Measure how far the items moved since the tree was built.
+	 * @return true if the current tree was built over the same items and
+	 * none of them moved further than the rebuild threshold
+	 */
+	private boolean canRefit(int n) {
+		if ( store != builtStore || n != builtCount )
+			return false;
+		float[] location = store.location;
+		float max = 0f;
+		for ( int i = 0; i < 2*n; i += 2 ) {
+			float dx = location[i] - builtLocation[i];
+			float dy = location[i+1] - builtLocation[i+1];
+			float d = dx*dx + dy*dy;
+			if ( d > max ) max = d;
+		}
+		displacement = (float)Math.sqrt(max);
+		return displacement <= rebuildThreshold;
+	}
+
+	/**
+	 * Compute and squarify the bounds of the quadtree from the current
+	 * locations of the items in the store.
+	 * @throws RuntimeException if the location of an item is not finite
+	 */
+	void computeBounds() {
+		float[] location = store.location;
 		float x1 = Float.MAX_VALUE, y1 = Float.MAX_VALUE;
 		float x2 = -Float.MAX_VALUE, y2 = -Float.MAX_VALUE;
-		Iterator itemIter = fsim.getItems();
-		while ( itemIter.hasNext() ) {
-			ForceItem item = (ForceItem)itemIter.next();
-			float x = item.location[0];
-			float y = item.location[1];
+		for ( int i = 0, n = store.size(); i < n; i++ ) {
+			float x = location[2*i];
+			float y = location[2*i+1];
+			if ( Float.isNaN(x) || Float.isNaN(y) || Float.isInfinite(x) || Float.isInfinite(y) )
+				throw new RuntimeException("Invalid node position!");
 			if ( x < x1 ) x1 = x;
 			if ( y < y1 ) y1 = y;
 			if ( x > x2 ) x2 = x;
@@ -152,132 +301,174 @@ public class NBodyForce extends AbstractForce {
 		float dx = x2-x1, dy = y2-y1;
 		if ( dx > dy ) { y2 = y1 + dx; } else { x2 = x1 + dy; }
 		setBounds(x1,y1,x2,y2);
-
-		// insert items into quadtree
-		itemIter = fsim.getItems();
-		while ( itemIter.hasNext() ) {
-			ForceItem item = (ForceItem)itemIter.next();
-			insert(item);
-		}
-
-		// calculate magnitudes and centers of mass
-		calcMass(root);
 	}
 
+	/** @return the minimum x-coordinate of the quadtree bounds */
+	float getMinX() { return xMin; }
+	/** @return the minimum y-coordinate of the quadtree bounds */
+	float getMinY() { return yMin; }
+	/** @return the maximum x-coordinate of the quadtree bounds */
+	float getMaxX() { return xMax; }
+	/** @return the maximum y-coordinate of the quadtree bounds */
+	float getMaxY() { return yMax; }
+
 	/**
 	 * Inserts an item into the quadtree.
-	 * @param item the ForceItem to add.
+	 * @param item the index of the particle to add.
 	 * @throws IllegalStateException if the current location of the item is
 	 * outside the bounds of the quadtree
 	 */
-	public void insert(ForceItem item) {
-		// insert item into the quadtrees
-		try {
-			insert(item, root, xMin, yMin, xMax, yMax);
-		} catch ( StackOverflowError e ) {
-			e.printStackTrace();
-		}
+	public void insert(int item) {
+		tree.insert(store, item, ROOT, 0, xMin, yMin, xMax, yMax);
 	}
 
-	private void insert(ForceItem p, QuadTreeNode n, float x1, float y1, float x2, float y2){
-		/* Try to insert particle p at node n in the quadtree
-		 * by construction, each leaf will contain either 1 or 0 particles */
-		if (Float.isInfinite(x1) || Float.isInfinite(x2) || Float.isInfinite(y1) || Float.isInfinite(y2)) 
-			throw new RuntimeException("Infinite node position!");
-
-		if ( n.hasChildren ) { // n contains more than 1 particle
-			insertHelper(p,n,x1,y1,x2,y2);
-		} else if ( n.value != null ) { // n contains 1 particle
-			if ( isSameLocation(n.value, p) ) {
-				insertHelper(p,n,x1,y1,x2,y2);
-			} else {
-				ForceItem v = n.value; n.value = null;
-				insertHelper(v,n,x1,y1,x2,y2);
-				insertHelper(p,n,x1,y1,x2,y2);
-			}
-		} else { // n is empty, so is a leaf
-			n.value = p;
-		}
+	/**
+	 * Calculates the force vector acting on the given item.
+	 * @param item the ForceItem for which to compute the force
+	 */
+	public void getForce(ForceItem item) {
+		getForce(item.getStore(), item.getIndex());
+	}
+
+	/**
+	 * Calculates the force vector acting on the given particle.
+	 * @param store the ParticleStore this force was initialized with
+	 * @param item the index of the particle for which to compute the force
+	 */
+	public void getForce(ParticleStore store, int item) {
+		walk(store, item, false);
 	}
 
-	private static boolean isSameLocation(ForceItem f1, ForceItem f2) {
-		float dx = Math.abs(f1.location[0] - f2.location[0]);
-		float dy = Math.abs(f1.location[1] - f2.location[1]);
-		return (dx < 0.001f && dy < 0.001f);
+	/**
+	 * Calculates the far field acting on the given particle, recording the
+	 * particles met individually for {@link #getNearForce(ParticleStore, int)}.
+	 * @see prefuse.util.force.Force#getFarForce(ParticleStore, int)
+	 */
+	public void getFarForce(ParticleStore store, int item) {
+		nearCount[item] = 0;
+		walk(store, item, true);
 	}
 
-	private void insertHelper(ForceItem p, QuadTreeNode n, float x1, float y1, float x2, float y2) {   
-		float x = p.location[0], y = p.location[1];
-		float splitx = (x1+x2)/2;
-		float splity = (y1+y2)/2;
-		int i = (x>=splitx ? 1 : 0) + (y>=splity ? 2 : 0);
-		// create new child node, if necessary
-		if ( n.children[i] == null ) {
-			n.children[i] = factory.getQuadTreeNode();
-			n.hasChildren = true;
+	/**
+	 * Calculates the near field acting on the given particle: the force of
+	 * the particles its last far field met individually, where they are now.
+	 * @see prefuse.util.force.Force#getNearForce(ParticleStore, int)
+	 */
+	public void getNearForce(ParticleStore store, int item) {
+		float[] location = store.location;
+		int[] others = near[item];
+		for ( int k = 0, count = nearCount[item]; k < count; k++ ) {
+			int other = others[k];
+			addForce(store, item, location[2*other], location[2*other+1], store.mass[other], other, 0f);
 		}
-		// update bounds
-		if ( i==1 || i==3 ) x1 = splitx; else x2 = splitx;
-		if ( i > 1 )        y1 = splity; else y2 = splity;
-		// recurse 
-		insert(p,n.children[i],x1,y1,x2,y2);        
 	}
 
-	private void calcMass(QuadTreeNode n) {
-		float xcom = 0, ycom = 0;
-		n.mass = 0;
-		if ( n.hasChildren ) {
-			for ( int i=0; i < n.children.length; i++ ) {
-				if ( n.children[i] != null ) {
-					calcMass(n.children[i]);
-					n.mass += n.children[i].mass;
-					xcom += n.children[i].mass * n.children[i].com[0];
-					ycom += n.children[i].mass * n.children[i].com[1];
+	/**
+	 * Walk the tree for the given particle, depth first with an explicit
+	 * stack; an internal node holding a particle of its own is pushed a
+	 * second time (as its complement) so that its own contribution is added
+	 * after those of its children.
+	 * @param store the ParticleStore this force was initialized with
+	 * @param item the index of the particle for which to compute the force
+	 * @param far true to add the far field only and record the particles
+	 * met individually, false to add the whole force
+	 */
+	private void walk(ParticleStore store, int item, boolean far) {
+		QuadTree tree = this.tree;
+		int[] children = tree.children, value = tree.value, next = tree.next;
+		boolean[] hasChildren = tree.hasChildren, merged = tree.merged;
+		float[] mass = tree.mass, com = tree.com, extent = tree.extent;
+		int[] stack = stacks.get();
+		if ( stack == null || stack.length < 4*tree.maxDepth+8 ) {
+			stack = new int[2*(4*tree.maxDepth+8)];
+			stacks.set(stack);
+		}
+
+		int top = 0;
+		stack[top++] = ROOT;
+		while ( top > 0 ) {
+			int n = stack[--top];
+			if ( n < 0 ) {
+				// the children of n are done; add the particle held by n itself
+				n = ~n;
+				if ( value[n] == EMPTY || value[n] == item )
+					continue;
+				if ( far )
+					addNear(item, value[n]);
+				else
+					addForce(store, item, com[2*n], com[2*n+1], mass[n], value[n], 0f);
+			} else if ( !hasChildren[n] && (value[n] != item || merged[n]) ) {
+				// either only 1 particle or a merged leaf, so calc force
+				if ( !far ) {
+					addForce(store, item, com[2*n], com[2*n+1], mass[n], value[n], 0f);
+				} else {
+					for ( int v = value[n]; v != EMPTY; v = merged[n] ? next[v] : EMPTY )
+						if ( v != item )
+							addNear(item, v);
+				}
+			} else if ( !addForce(store, item, com[2*n], com[2*n+1], mass[n], value[n], extent[n]) 
+					&& hasChildren[n] ) { // descend for more accurate calculation
+				stack[top++] = ~n;
+				for ( int i = 3; i >= 0; i-- ) {
+					int c = children[4*n+i];
+					if ( c != EMPTY )
+						stack[top++] = c;
 				}
 			}
 		}
-		if ( n.value != null ) {
-			n.mass += n.value.mass;
-			xcom += n.value.mass * n.value.location[0];
-			ycom += n.value.mass * n.value.location[1];
-		}
-		n.com[0] = xcom / n.mass;
-		n.com[1] = ycom / n.mass;
 	}
 
 	/**
-	 * Calculates the force vector acting on the given item.
-	 * @param item the ForceItem for which to compute the force
+	 * Record a particle met individually by the far field of another.
 	 */
-	public void getForce(ForceItem item) {
-		try {
-			forceHelper(item,root,xMin,yMin,xMax,yMax);
-		} catch ( StackOverflowError e ) {
-			e.printStackTrace();
-		}
+	private void addNear(int item, int other) {
+		int[] others = near[item];
+		int count = nearCount[item];
+		if ( others == null || others.length == count )
+			near[item] = others = ( others == null ? new int[8] : Arrays.copyOf(others, 2*count) );
+		others[count] = other;
+		nearCount[item] = count+1;
 	}
 
-	private void forceHelper(ForceItem item, QuadTreeNode n, float x1, float y1, float x2, float y2) {
+	/**
+	 * Adds the force exerted on a particle by a mass, unless it is a cell
+	 * too large for the Barnes-Hut approximation. The approximation criteria
+	 * is if the ratio of the size of the quadtree box to the distance between
+	 * the point and the box's center of mass is beneath some threshold theta.
+	 * @param store the ParticleStore this force was initialized with
+	 * @param item the index of the particle for which to compute the force
+	 * @param cx the x-coordinate of the center of the mass
+	 * @param cy the y-coordinate of the center of the mass
+	 * @param m the mass
+	 * @param other the particle held by the mass, whose dimensions it takes,
+	 * or EMPTY
+	 * @param size the extent of the cell of the mass, 0 for a particle
+	 * @return true if the force was added, or left out beyond the minimum
+	 * distance; false if the cell has to be descended
+	 */
+	private boolean addForce(ParticleStore store, int item, float cx, float cy, float m, int other, float size) {
+		float[] dimensions = store.dimensions, force = store.force;
 		boolean isOverlapping = false;
-		float dx = n.com[0] - item.location[0];
-		float dy = n.com[1] - item.location[1];
+		float dx = cx - store.location[2*item];
+		float dy = cy - store.location[2*item+1];
 		float effectivedx = (float) Math.abs(dx), effectivedy = (float) Math.abs(dy);
 
 		float r = (float) Math.sqrt(dx * dx + dy * dy);
 		if (r == 0f) { // if items are in the exact same place, make some noise;
-			dx = (rand.nextFloat() - 0.5f) / 50.0f;
-			dy = (rand.nextFloat() - 0.5f) / 50.0f;
+			int salt = Float.floatToIntBits(m);
+			dx = jitter(item, salt) / 50.0f;
+			dy = jitter(item, ~salt) / 50.0f;
 			r  = (float)Math.sqrt(dx*dx+dy*dy);
 		}
 
 		double width = 0., height = 0.;
 		if (avoidOverlap) {
-			if (n.value != null) {
-				width = item.dimensions[0] + n.value.dimensions[0];
-				height = item.dimensions[1] + n.value.dimensions[1];
+			if (other != EMPTY) {
+				width = dimensions[2*item] + dimensions[2*other];
+				height = dimensions[2*item+1] + dimensions[2*other+1];
 			} else {
-				width = item.dimensions[0] * 2;
-				height = item.dimensions[1] * 2;
+				width = dimensions[2*item] * 2;
+				height = dimensions[2*item+1] * 2;
 			}
 
 			effectivedx = (float) (Math.abs(dx) - width);
@@ -297,77 +488,15 @@ public class NBodyForce extends AbstractForce {
 				effectivedy = 0.00001f;
 		}
 
-		boolean minDist = params[MIN_DISTANCE] > 0f && r > params[MIN_DISTANCE] && !isOverlapping;
-
-		// the Barnes-Hut approximation criteria is if the ratio of the
-		// size of the quadtree box to the distance between the point and
-		// the box's center of mass is beneath some threshold theta.
-		if ((!n.hasChildren && n.value != item) || ((x2 - x1) / r < params[BARNES_HUT_THETA])) {
-			if ( minDist ) return;
-
-			// either only 1 particle or we meet criteria
-			// for Barnes-Hut approximation, so calc force
-			float v = params[GRAVITATIONAL_CONST] * item.mass * n.mass / (r * r * r);
-			item.force[0] += v * Math.abs(effectivedx) * (dx < 0 ? -1 : 1);
-			item.force[1] += v * Math.abs(effectivedy) * (dy < 0 ? -1 : 1);
-		} else if ( n.hasChildren ) { // recurse for more accurate calculation
-			float splitx = (x1 + x2) / 2;
-			float splity = (y1 + y2) / 2;
-			for(int i = 0; i < n.children.length; i++) {
-				if(n.children[i] != null) {
-					forceHelper(item, n.children[i],
-							(i == 1 || i == 3 ? splitx : x1), (i > 1 ? splity : y1),
-							(i == 1 || i == 3 ? x2 : splitx), (i > 1 ? y2 : splity));
-				}
-			}
-			if ( minDist ) return;
-			if ( n.value != null && n.value != item ) {
-				float v = params[GRAVITATIONAL_CONST] * item.mass * n.mass / (r * r * r);
-				item.force[0] += v * Math.abs(effectivedx) * (dx < 0 ? -1 : 1);
-				item.force[1] += v * Math.abs(effectivedy) * (dy < 0 ? -1 : 1);
-			}
-		}
+		if ( size > 0f && size / r >= params[BARNES_HUT_THETA] )
+			return false;
+		float minDistance = params[MIN_DISTANCE];
+		if ( minDistance > 0f && r > minDistance && !isOverlapping )
+			return true;
+		float v = params[GRAVITATIONAL_CONST] * store.mass[item] * m / (r * r * r);
+		force[2*item]   += v * Math.abs(effectivedx) * (dx < 0 ? -1 : 1);
+		force[2*item+1] += v * Math.abs(effectivedy) * (dy < 0 ? -1 : 1);
+		return true;
 	}
 
-	/*
-	 * Represents a node in the quadtree.
-	 */
-	public static final class QuadTreeNode {
-		public QuadTreeNode() {
-			com = new float[] {0.0f, 0.0f};
-			children = new QuadTreeNode[4];
-		} 
-		boolean hasChildren = false;
-		float mass; // total mass held by this node
-		float[] com; // center of mass of this node 
-		ForceItem value; // ForceItem in this node, null if node has children
-		QuadTreeNode[] children; // children nodes
-	} // end of inner class QuadTreeNode
-
-	/**
-	 * Helper class to minimize number of object creations across multiple
-	 * uses of the quadtree.
-	 */
-	public static final class QuadTreeNodeFactory {
-		private int maxNodes = 50000;
-		private ArrayList nodes = new ArrayList();
-
-		public QuadTreeNode getQuadTreeNode() {
-			if ( nodes.size() > 0 ) {
-				return (QuadTreeNode)nodes.remove(nodes.size()-1);
-			} else {
-				return new QuadTreeNode();
-			}
-		}
-		public void reclaim(QuadTreeNode n) {
-			n.mass = 0;
-			n.com[0] = 0.0f; n.com[1] = 0.0f;
-			n.value = null;
-			n.hasChildren = false;
-			Arrays.fill(n.children, null);          
-			if ( nodes.size() < maxNodes )
-				nodes.add(n);
-		}
-	} // end of inner class QuadTreeNodeFactory
-
 } // end of class NBodyForce
@@ -0,0 +1,251 @@
+package prefuse.util.force;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>An {@link NBodyForce} whose quadtree is built in parallel. The items are
+ * bucketed by the Morton key of the cell they fall in a fixed number of levels
+ * below the root. The top of the tree is laid out from the bucket counts
+ * alone, and the subtree below every occupied cell is built independently,
+ * on the simulator's ForkJoinPool when it has one, before being grafted into
+ * the main arena.</p>
+ *
+ * <p>The cells are computed with the same split arithmetic as insertion and
+ * every subtree receives its items in their original order, so the tree is the
+ * one serial insertion would build, except that particles sharing a place
+ * never hold a node above the partition level. The tree does not depend on the
+ * number of threads. Force evaluation is inherited unchanged, including the
+ * avoidOverlap and Barnes-Hut theta semantics. It is safe to call concurrently
+ * for distinct items, so the simulator evaluates the repulsion of every item
+ * in parallel straight into that item's force slot.</p>
+ */
+public class ParallelNBodyForce extends NBodyForce {
+
+	/** The depth of the cells whose subtrees are built independently */
+	private static final int PARTITION_LEVELS = 3;
+	private static final int CELLS = 1 << (2*PARTITION_LEVELS);
+
+	/** Items per leaf task when computing Morton keys in parallel */
+	private static final int KEY_GRAIN = 4096;
+
+	private int[] keys = new int[0];
+	private int[] order = new int[0];
+	private final int[] cellStart = new int[CELLS+1];
+	private final QuadTree[] cellTrees = new QuadTree[CELLS];
+
+	// subtrees waiting to be built and grafted under the skeleton
+	private final int[] jobCell = new int[CELLS];
+	private final int[] jobParent = new int[CELLS];
+	private final int[] jobQuadrant = new int[CELLS];
+	private final float[] jobBounds = new float[4*CELLS];
+	private int jobCount;
+
+	/**
+	 * Create a new ParallelNBodyForce with default parameters.
+	 */
+	public ParallelNBodyForce(boolean avoidOverlap) {
+		super(avoidOverlap);
+	}
+
+	/**
+	 * Create a new ParallelNBodyForce.
+	 * @param gravConstant the gravitational constant to use. Nodes will attract each other
+	 * if this value is positive, and will repel each other if it is negative
+	 * @param minDistance the distance within which two particles will
+	 * interact. If -1, the value is treated as infinite.
+	 * @param theta the Barnes-Hut parameter theta, which controls when an aggregated mass is
+	 * used rather than drilling down to individual item mass values.
+	 */
+	public ParallelNBodyForce(float gravConstant, float minDistance, float theta, boolean avoidOverlap) {
+		super(gravConstant, minDistance, theta, avoidOverlap);
+	}
+
+	/**
+	 * Build the quadtree from scratch in parallel.
+	 * @param fsim the enclosing ForceSimulator
+	 */
+	@Override
+	void buildTree(ForceSimulator fsim) {
+		int n = store.size();
+		ForkJoinPool pool = fsim.getPool();
+		tree.ensureCapacity(2*n+1);
+		computeBounds();
+		tree.clear();
+		if ( n < 2 ) {
+			int root = tree.newNode(getMaxX() - getMinX());
+			if ( n == 1 )
+				tree.value[root] = 0;
+			tree.calcMass(store, 0, tree.nodeCount);
+			return;
+		}
+
+		// bucket the items by the Morton key of their cell, keeping item order
+		if ( keys.length < n ) {
+			keys = new int[n];
+			order = new int[n];
+		}
+		if ( pool != null && n >= 2*KEY_GRAIN )
+			pool.invoke(new KeyTask(0, n));
+		else
+			computeKeys(0, n);
+		Arrays.fill(cellStart, 0);
+		for ( int i = 0; i < n; i++ )
+			cellStart[keys[i]+1]++;
+		for ( int c = 0; c < CELLS; c++ )
+			cellStart[c+1] += cellStart[c];
+		int[] next = Arrays.copyOf(cellStart, CELLS);
+		for ( int i = 0; i < n; i++ )
+			order[next[keys[i]]++] = i;
+
+		// lay out the top of the tree, then build and graft the subtrees
+		jobCount = 0;
+		buildSkeleton(0, 0, CELLS, getMinX(), getMinY(), getMaxX(), getMaxY());
+		int skeletonCount = tree.nodeCount;
+		tree.maxDepth = PARTITION_LEVELS;
+		if ( pool != null && jobCount > 1 )
+			pool.invoke(new SubtreeTask(0, jobCount));
+		else
+			buildSubtrees(0, jobCount);
+		for ( int j = 0; j < jobCount; j++ ) {
+			int root = tree.append(cellTrees[jobCell[j]], PARTITION_LEVELS);
+			tree.children[4*jobParent[j]+jobQuadrant[j]] = root;
+			tree.hasChildren[jobParent[j]] = true;
+		}
+		tree.calcMass(store, 0, skeletonCount);
+	}
+
+	/**
+	 * Compute the Morton keys of the items in [from, to).
+	 */
+	private void computeKeys(int from, int to) {
+		float[] location = store.location;
+		for ( int i = from; i < to; i++ ) {
+			float x = location[2*i], y = location[2*i+1];
+			float x1 = getMinX(), y1 = getMinY(), x2 = getMaxX(), y2 = getMaxY();
+			int key = 0;
+			for ( int level = 0; level < PARTITION_LEVELS; level++ ) {
+				float splitx = (x1+x2)/2;
+				float splity = (y1+y2)/2;
+				int q = QuadTree.quadrant(x, y, x1, y1, x2, y2);
+				if ( q==1 || q==3 ) x1 = splitx; else x2 = splitx;
+				if ( q > 1 )        y1 = splity; else y2 = splity;
+				key = 4*key + q;
+			}
+			keys[i] = key;
+		}
+	}
+
+	/**
+	 * Create the node for the cells [cellFrom, cellTo) at the given depth
+	 * and its children down to the partition level. Cells holding a single
+	 * item become leaves right away; cells at the partition level holding
+	 * more are queued as subtree jobs.
+	 * @return the id of the new node
+	 */
+	private int buildSkeleton(int depth, int cellFrom, int cellTo, float x1, float y1, float x2, float y2) {
+		int node = tree.newNode(x2 - x1);
+		int span = (cellTo - cellFrom) / 4;
+		float splitx = (x1+x2)/2;
+		float splity = (y1+y2)/2;
+		for ( int q = 0; q < 4; q++ ) {
+			int from = cellFrom + q*span, to = from + span;
+			int count = cellStart[to] - cellStart[from];
+			if ( count == 0 )
+				continue;
+			float cx1 = (q==1 || q==3) ? splitx : x1;
+			float cx2 = (q==1 || q==3) ? x2 : splitx;
+			float cy1 = (q > 1) ? splity : y1;
+			float cy2 = (q > 1) ? y2 : splity;
+			if ( count == 1 ) {
+				int c = tree.child(node, q, cx1, cx2);
+				tree.value[c] = order[cellStart[from]];
+			} else if ( depth+1 == PARTITION_LEVELS ) {
+				int j = jobCount++;
+				jobCell[j] = from;
+				jobParent[j] = node;
+				jobQuadrant[j] = q;
+				jobBounds[4*j] = cx1;
+				jobBounds[4*j+1] = cy1;
+				jobBounds[4*j+2] = cx2;
+				jobBounds[4*j+3] = cy2;
+			} else {
+				int c = buildSkeleton(depth+1, from, to, cx1, cy1, cx2, cy2);
+				tree.children[4*node+q] = c;
+				tree.hasChildren[node] = true;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Build the subtrees of the jobs in [from, to), each in its own arena.
+	 */
+	private void buildSubtrees(int from, int to) {
+		for ( int j = from; j < to; j++ ) {
+			int cell = jobCell[j];
+			QuadTree sub = cellTrees[cell];
+			if ( sub == null ) {
+				sub = new QuadTree(64);
+				cellTrees[cell] = sub;
+			}
+			float x1 = jobBounds[4*j], y1 = jobBounds[4*j+1];
+			float x2 = jobBounds[4*j+2], y2 = jobBounds[4*j+3];
+			sub.clear();
+			int root = sub.newNode(x2 - x1);
+			for ( int k = cellStart[cell]; k < cellStart[cell+1]; k++ )
+				sub.insert(store, order[k], root, 0, x1, y1, x2, y2);
+			sub.calcMass(store, 0, sub.nodeCount);
+		}
+	}
+
+	/**
+	 * Fork/join task computing the Morton keys of a range of items.
+	 */
+	private final class KeyTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to;
+
+		KeyTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if ( to - from <= KEY_GRAIN ) {
+				computeKeys(from, to);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new KeyTask(from, mid), new KeyTask(mid, to));
+			}
+		}
+	} // end of inner class KeyTask
+
+	/**
+	 * Fork/join task building the subtrees of a range of jobs.
+	 */
+	private final class SubtreeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to;
+
+		SubtreeTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if ( to - from <= 1 ) {
+				buildSubtrees(from, to);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new SubtreeTask(from, mid), new SubtreeTask(mid, to));
+			}
+		}
+	} // end of inner class SubtreeTask
+
+} // end of class ParallelNBodyForce
@@ -0,0 +1,281 @@
+package prefuse.util.force;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays storage for the particles of a force simulation. Every
+ * per-particle quantity lives in a flat primitive column indexed by particle
+ * id, rather than in a handful of small arrays hanging off each particle.
+ * Two-dimensional quantities are interleaved as (x, y) pairs, so the x value
+ * of particle <code>i</code> is found at <code>2*i</code> and the y value at
+ * <code>2*i+1</code>. The Runge-Kutta scratch columns <code>k</code> and
+ * <code>l</code> hold {@link #STAGES} such pairs per particle, starting at
+ * <code>STAGES*2*i</code>.
+ *
+ * <p>{@link ForceItem} instances are lightweight views onto one row of a store.
+ * An item that has not been added to a {@link ForceSimulator} keeps its values
+ * in plain fields; adding it to a simulator copies them into a row of the
+ * simulator's store and binds the view to that row.</p>
+ */
+public class ParticleStore {
+
+	/** The number of Runge-Kutta stages held in the scratch columns */
+	public static final int STAGES = 4;
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/** The mass values of the particles */
+	public float[] mass;
+	/** The (x, y) forces acting on the particles */
+	public float[] force;
+	/** The (x, y) velocities of the particles */
+	public float[] velocity;
+	/** The (x, y) locations of the particles */
+	public float[] location;
+	/** The previous (x, y) locations of the particles */
+	public float[] plocation;
+	/** The (width, height) dimensions of the nodes corresponding to the particles */
+	public float[] dimensions;
+	/** The interned category ids of the particles, {@link CategoryTable#NONE} if not interned */
+	public int[] category;
+	/** Whether the particles are asleep, skipped by the integrators and as force receivers */
+	public boolean[] asleep;
+	/** The number of consecutive steps the particles have been at rest */
+	public int[] rest;
+	/** Temporary position deltas for Runge-Kutta integration */
+	public float[] k;
+	/** Temporary velocity deltas for Runge-Kutta integration */
+	public float[] l;
+
+	private ForceItem[] items;
+	private int size;
+	// whether this store only holds an item for its own sake, see hold()
+	private boolean own;
+
+	/**
+	 * Create a new, empty ParticleStore with a default capacity.
+	 */
+	public ParticleStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a new, empty ParticleStore.
+	 * @param capacity the number of particles to allocate room for
+	 */
+	public ParticleStore(int capacity) {
+		capacity = Math.max(1, capacity);
+		mass = new float[capacity];
+		force = new float[2*capacity];
+		velocity = new float[2*capacity];
+		location = new float[2*capacity];
+		plocation = new float[2*capacity];
+		dimensions = new float[2*capacity];
+		category = new int[capacity];
+		asleep = new boolean[capacity];
+		rest = new int[capacity];
+		k = new float[STAGES*2*capacity];
+		l = new float[STAGES*2*capacity];
+		items = new ForceItem[capacity];
+		size = 0;
+	}
+
+	/**
+	 * @return the number of particles held in this store
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the ForceItem view bound to the given particle.
+	 * @param i the particle index
+	 * @return the ForceItem viewing that particle
+	 */
+	public ForceItem getItem(int i) {
+		if ( i < 0 || i >= size )
+			throw new IndexOutOfBoundsException();
+		return items[i];
+	}
+
+	/**
+	 * Make sure this store can hold at least the given number of particles
+	 * without growing its columns again.
+	 * @param capacity the minimum number of particles
+	 */
+	public void ensureCapacity(int capacity) {
+		if ( capacity <= items.length )
+			return;
+		capacity = Math.max(capacity, items.length + (items.length >> 1));
+		mass = Arrays.copyOf(mass, capacity);
+		force = Arrays.copyOf(force, 2*capacity);
+		velocity = Arrays.copyOf(velocity, 2*capacity);
+		location = Arrays.copyOf(location, 2*capacity);
+		plocation = Arrays.copyOf(plocation, 2*capacity);
+		dimensions = Arrays.copyOf(dimensions, 2*capacity);
+		category = Arrays.copyOf(category, capacity);
+		asleep = Arrays.copyOf(asleep, capacity);
+		rest = Arrays.copyOf(rest, capacity);
+		k = Arrays.copyOf(k, STAGES*2*capacity);
+		l = Arrays.copyOf(l, STAGES*2*capacity);
+		items = Arrays.copyOf(items, capacity);
+	}
+
+	/**
+	 * Make this new store the own store of an item not held by any store,
+	 * e.g. to hand the item to code reading its store. Such a store gives
+	 * the item up to any simulation it is later added to.
+	 * @param item the view whose particle should move into this store
+	 */
+	void hold(ForceItem item) {
+		own = true;
+		attach(item);
+	}
+
+	/**
+	 * Append a copy of the particle currently viewed by the given item and
+	 * rebind the item to the copy held in this store. Only items not held by
+	 * any store, or held by their own store, may be attached: a row left in
+	 * the store of another simulation would keep being simulated there.
+	 * @param item the view whose particle should move into this store
+	 * @return the index of the particle within this store
+	 * @throws IllegalArgumentException if the item is held by another
+	 * simulation's store
+	 */
+	int attach(ForceItem item) {
+		if ( item.store != null && !item.store.own )
+			throw new IllegalArgumentException("The ForceItem is held by another simulation; remove it first");
+		ensureCapacity(size+1);
+		int i = size++;
+		clearRow(i);
+		if ( item.store == null )
+			item.storeFields(this, i);
+		else
+			copyRow(item.store, item.index, this, i);
+		items[i] = item;
+		item.store = this;
+		item.index = i;
+		return i;
+	}
+
+	/**
+	 * Remove a particle from this store. The last particle is moved into the
+	 * vacated slot, and the values of the removed item are copied back into
+	 * its fields so that it remains valid.
+	 * @param i the index of the particle to remove
+	 */
+	void remove(int i) {
+		if ( i < 0 || i >= size )
+			throw new IndexOutOfBoundsException();
+		items[i].loadFields();
+		int last = --size;
+		if ( i != last ) {
+			copyRow(this, last, this, i);
+			items[i] = items[last];
+			items[i].index = i;
+		}
+		items[last] = null;
+	}
+
+	/**
+	 * Remove all particles from this store, copying the values of every item
+	 * back into its fields so that it remains valid.
+	 */
+	void clear() {
+		for ( int i = 0; i < size; i++ ) {
+			items[i].loadFields();
+			items[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Reorder the particles of this store, e.g. so that particles close to
+	 * each other in space are close to each other in memory. Every item
+	 * stays bound to its particle at the particle's new index.
+	 * @param order a permutation of the particle indices, the particle at
+	 * index <code>order[i]</code> moving to index <code>i</code>
+	 */
+	void permute(int[] order) {
+		ParticleStore sorted = new ParticleStore(items.length);
+		for ( int i = 0; i < size; i++ ) {
+			copyRow(this, order[i], sorted, i);
+			sorted.items[i] = items[order[i]];
+			sorted.items[i].index = i;
+		}
+		mass = sorted.mass;
+		force = sorted.force;
+		velocity = sorted.velocity;
+		location = sorted.location;
+		plocation = sorted.plocation;
+		dimensions = sorted.dimensions;
+		category = sorted.category;
+		asleep = sorted.asleep;
+		rest = sorted.rest;
+		k = sorted.k;
+		l = sorted.l;
+		items = sorted.items;
+	}
+
+	/**
+	 * Checks a particle to make sure its values are all valid numbers
+	 * (i.e., not NaNs).
+	 * @param i the index of the particle to check
+	 * @return true if all the values are valid, false otherwise
+	 */
+	public boolean isValid(int i) {
+		int x = 2*i, y = 2*i+1;
+		return
+		  !( Float.isNaN(location[x])   || Float.isNaN(location[y])   ||
+		     Float.isNaN(plocation[x])  || Float.isNaN(plocation[y])  ||
+		     Float.isNaN(velocity[x])   || Float.isNaN(velocity[y])   ||
+		     Float.isNaN(dimensions[x]) || Float.isNaN(dimensions[y]) ||
+		     Float.isNaN(force[x])      || Float.isNaN(force[y]) );
+	}
+
+	/**
+	 * Wake a particle, so that it is integrated and receives forces again.
+	 * @param i the index of the particle to wake
+	 */
+	public void wake(int i) {
+		asleep[i] = false;
+		rest[i] = 0;
+	}
+
+	/**
+	 * Wake all particles of this store.
+	 */
+	public void wakeAll() {
+		Arrays.fill(asleep, 0, size, false);
+		Arrays.fill(rest, 0, size, 0);
+	}
+
+	private void clearRow(int i) {
+		mass[i] = 0f;
+		Arrays.fill(force, 2*i, 2*i+2, 0f);
+		Arrays.fill(velocity, 2*i, 2*i+2, 0f);
+		Arrays.fill(location, 2*i, 2*i+2, 0f);
+		Arrays.fill(plocation, 2*i, 2*i+2, 0f);
+		Arrays.fill(dimensions, 2*i, 2*i+2, 0f);
+		category[i] = CategoryTable.NONE;
+		asleep[i] = false;
+		rest[i] = 0;
+		Arrays.fill(k, STAGES*2*i, STAGES*2*(i+1), 0f);
+		Arrays.fill(l, STAGES*2*i, STAGES*2*(i+1), 0f);
+	}
+
+	static void copyRow(ParticleStore src, int si, ParticleStore dst, int di) {
+		dst.mass[di] = src.mass[si];
+		System.arraycopy(src.force, 2*si, dst.force, 2*di, 2);
+		System.arraycopy(src.velocity, 2*si, dst.velocity, 2*di, 2);
+		System.arraycopy(src.location, 2*si, dst.location, 2*di, 2);
+		System.arraycopy(src.plocation, 2*si, dst.plocation, 2*di, 2);
+		System.arraycopy(src.dimensions, 2*si, dst.dimensions, 2*di, 2);
+		dst.category[di] = src.category[si];
+		dst.asleep[di] = src.asleep[si];
+		dst.rest[di] = src.rest[si];
+		System.arraycopy(src.k, STAGES*2*si, dst.k, STAGES*2*di, STAGES*2);
+		System.arraycopy(src.l, STAGES*2*si, dst.l, STAGES*2*di, STAGES*2);
+	}
+
+} // end of class ParticleStore
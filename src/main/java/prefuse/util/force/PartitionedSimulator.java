@@ -0,0 +1,228 @@
+package prefuse.util.force;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a set of independent ForceSimulators, the partitions, as one
+ * simulation. Every item belongs to exactly one partition and interacts
+ * with the items of other partitions only through the springs connecting
+ * them. Each partition therefore keeps its own forces, and in particular
+ * its own n-body tree, so repulsion costs O(sum of n_i log n_i) over the
+ * partition sizes rather than O(n log n) over all items.
+ *
+ * <p>The simulation advances in synchronized rounds. At the start of a round
+ * the springs between partitions are evaluated once from the current
+ * locations and handed to every partition as a fixed {@link ExternalForce};
+ * the partitions then step concurrently on a bounded ForkJoinPool, each on a
+ * single thread, for {@link #getStepsPerRound()} steps.</p>
+ */
+public class PartitionedSimulator {
+
+	private ArrayList<ForceSimulator> partitions;
+	private ArrayList<ExternalForce> externals;
+	private ArrayList<Spring> springs;
+	private SpringForce springForce;
+	private int stepsPerRound = 1;
+	private int threadCount = 1;
+	private ForkJoinPool pool;
+
+	/**
+	 * Create a new PartitionedSimulator without any partitions.
+	 */
+	public PartitionedSimulator() {
+		partitions = new ArrayList<>();
+		externals = new ArrayList<>();
+		springs = new ArrayList<>();
+		springForce = new SpringForce();
+	}
+
+	/**
+	 * Add a partition to the simulation. An ExternalForce carrying the
+	 * forces of the springs into other partitions is added to it.
+	 * @param sim the ForceSimulator of the partition
+	 */
+	public void addPartition(ForceSimulator sim) {
+		ExternalForce external = new ExternalForce();
+		sim.addForce(external);
+		partitions.add(sim);
+		externals.add(external);
+	}
+
+	/**
+	 * @return the ForceSimulators of all partitions
+	 */
+	public List<ForceSimulator> getPartitions() {
+		return Collections.unmodifiableList(partitions);
+	}
+
+	/**
+	 * Get the partition holding the given item.
+	 * @param item the ForceItem to look up
+	 * @return the ForceSimulator holding the item, or null if none does
+	 */
+	public ForceSimulator getPartition(ForceItem item) {
+		for ( int i = 0; i < partitions.size(); i++ ) {
+			ForceSimulator sim = partitions.get(i);
+			if ( sim.getParticleStore() == item.store )
+				return sim;
+		}
+		return null;
+	}
+
+	/**
+	 * Add a Spring to the simulation. A spring within a partition is added
+	 * to that partition's simulator; a spring between two partitions is kept
+	 * here and exchanged at the start of every round.
+	 * @param item1 the first endpoint of the spring
+	 * @param item2 the second endpoint of the spring
+	 * @param coeff the spring coefficient
+	 * @param length the spring length
+	 * @return the Spring added to the simulation
+	 */
+	public Spring addSpring(ForceItem item1, ForceItem item2, float coeff, float length) {
+		if ( item1 == null || item2 == null )
+			throw new IllegalArgumentException("ForceItems must be non-null");
+		ForceSimulator p1 = getPartition(item1), p2 = getPartition(item2);
+		if ( p1 == null || p2 == null )
+			throw new IllegalArgumentException("ForceItems must belong to a partition");
+		if ( p1 == p2 )
+			return p1.addSpring(item1, item2, coeff, length);
+		Spring s = Spring.getFactory().getSpring(item1, item2, coeff, length);
+		springs.add(s);
+		return s;
+	}
+
+	/**
+	 * Get an iterator over the Springs connecting different partitions.
+	 * @return an iterator over the Springs between partitions
+	 */
+	public Iterator<Spring> getSprings() {
+		return springs.iterator();
+	}
+
+	/**
+	 * @return the number of steps every partition takes per round
+	 */
+	public int getStepsPerRound() {
+		return stepsPerRound;
+	}
+
+	/**
+	 * Set the number of steps every partition takes between two exchanges
+	 * of the springs between partitions.
+	 * @param steps the number of steps per round, at least one
+	 */
+	public void setStepsPerRound(int steps) {
+		if ( steps < 1 )
+			throw new IllegalArgumentException("Steps per round must be >= 1");
+		stepsPerRound = steps;
+	}
+
+	/**
+	 * @return the number of partitions stepped concurrently
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Set the number of partitions stepped concurrently.
+	 * @param threads the number of threads to use, at least one
+	 */
+	public void setThreadCount(int threads) {
+		if ( threads < 1 )
+			throw new IllegalArgumentException("Thread count must be >= 1");
+		if ( threads != threadCount && pool != null ) {
+			pool.shutdown();
+			pool = null;
+		}
+		threadCount = threads;
+	}
+
+	/**
+	 * Release the worker threads of this simulation and of all partitions.
+	 */
+	public void shutdown() {
+		if ( pool != null ) {
+			pool.shutdown();
+			pool = null;
+		}
+		for ( int i = 0; i < partitions.size(); i++ )
+			partitions.get(i).shutdown();
+	}
+
+	/**
+	 * Run one synchronized round: exchange the springs between partitions,
+	 * then advance every partition by the steps of a round.
+	 * @param timestep the span of every step of the round
+	 */
+	public void runSimulator(long timestep) {
+		exchange();
+		int n = partitions.size();
+		if ( threadCount > 1 && n > 1 ) {
+			if ( pool == null )
+				pool = new ForkJoinPool(threadCount);
+			pool.invoke(new PartitionTask(0, n, timestep));
+		} else {
+			for ( int i = 0; i < n; i++ )
+				step(partitions.get(i), timestep);
+		}
+	}
+
+	private void step(ForceSimulator sim, long timestep) {
+		for ( int s = 0; s < stepsPerRound; s++ )
+			sim.runSimulator(timestep);
+	}
+
+	/**
+	 * Evaluate the springs between partitions at the current locations and
+	 * hand the result to the partitions. The force columns are free between
+	 * steps, so they serve as scratch space for the spring force.
+	 */
+	private void exchange() {
+		for ( int i = 0; i < partitions.size(); i++ ) {
+			ParticleStore store = partitions.get(i).getParticleStore();
+			Arrays.fill(store.force, 0, 2*store.size(), 0f);
+		}
+		for ( int j = 0, len = springs.size(); j < len; j++ )
+			springForce.getForce(springs.get(j));
+		for ( int i = 0; i < partitions.size(); i++ ) {
+			ParticleStore store = partitions.get(i).getParticleStore();
+			externals.get(i).setForces(store.force, store.size());
+		}
+	}
+
+	/**
+	 * Fork/join task stepping a range of partitions, one partition per leaf.
+	 */
+	private final class PartitionTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to;
+		private final long timestep;
+
+		PartitionTask(int from, int to, long timestep) {
+			this.from = from;
+			this.to = to;
+			this.timestep = timestep;
+		}
+
+		@Override
+		protected void compute() {
+			if ( to - from <= 1 ) {
+				for ( int i = from; i < to; i++ )
+					step(partitions.get(i), timestep);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new PartitionTask(from, mid, timestep), new PartitionTask(mid, to, timestep));
+			}
+		}
+	} // end of inner class PartitionTask
+
+} // end of class PartitionedSimulator
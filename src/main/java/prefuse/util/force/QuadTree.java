@@ -0,0 +1,273 @@
+package prefuse.util.force;
+
+import java.util.Arrays;
+
+/**
+ * Arena holding a Barnes-Hut quadtree in flat arrays indexed by node id.
+ * Every node covers a square cell and holds the ids of up to four children,
+ * at most one particle of its own, and the aggregated mass and center of mass
+ * of everything below it. Children are always allocated after their parents,
+ * so a node id is always smaller than the ids of its children.
+ *
+ * <p>The indexing scheme for child nodes goes row by row.
+ * <pre>
+ *   0 | 1    0 -> top left,    1 -> top right
+ *  -------
+ *   2 | 3    2 -> bottom left, 3 -> bottom right
+ * </pre></p>
+ *
+ * <p>Cells are not split below a minimum width or depth. A leaf reached
+ * beyond that merges the particles inserted into it, chained through
+ * {@link #next}, so that coincident particles cannot split cells forever.</p>
+ */
+final class QuadTree {
+
+	static final int EMPTY = -1;
+	/** The deepest level at which a cell is still split */
+	static final int MAX_DEPTH = 64;
+	/** The narrowest cell that is still split, the distance within which particles are in the same place */
+	static final float MIN_EXTENT = 0.001f;
+
+	int[] children;   // four child node ids per node, EMPTY if absent
+	int[] value;      // index of the particle held by a node, EMPTY if none
+	boolean[] hasChildren;
+	boolean[] merged; // whether a leaf holds a chain of several particles
+	int[] next;       // the next particle in the chain of a merged leaf, by particle index
+	float[] mass;     // total mass held by a node
+	float[] com;      // (x, y) center of mass of a node
+	float[] extent;   // width of the square cell covered by a node
+	int nodeCount;
+	int maxDepth;
+
+	QuadTree(int capacity) {
+		capacity = Math.max(1, capacity);
+		children = new int[4*capacity];
+		value = new int[capacity];
+		hasChildren = new boolean[capacity];
+		merged = new boolean[capacity];
+		next = new int[0];
+		mass = new float[capacity];
+		com = new float[2*capacity];
+		extent = new float[capacity];
+	}
+
+	/**
+	 * Make sure the arena can hold the given number of nodes.
+	 */
+	void ensureCapacity(int capacity) {
+		if ( capacity <= mass.length )
+			return;
+		capacity = Math.max(capacity, 2*mass.length);
+		children = Arrays.copyOf(children, 4*capacity);
+		value = Arrays.copyOf(value, capacity);
+		hasChildren = Arrays.copyOf(hasChildren, capacity);
+		merged = Arrays.copyOf(merged, capacity);
+		mass = Arrays.copyOf(mass, capacity);
+		com = Arrays.copyOf(com, 2*capacity);
+		extent = Arrays.copyOf(extent, capacity);
+	}
+
+	/**
+	 * Remove all nodes. The arrays are kept for reuse.
+	 */
+	void clear() {
+		nodeCount = 0;
+		maxDepth = 0;
+	}
+
+	/**
+	 * Take a fresh, empty node from the arena, growing the arena if needed.
+	 * @param width the width of the cell covered by the node
+	 * @return the id of the new node
+	 */
+	int newNode(float width) {
+		ensureCapacity(nodeCount+1);
+		int n = nodeCount++;
+		Arrays.fill(children, 4*n, 4*n+4, EMPTY);
+		value[n] = EMPTY;
+		hasChildren[n] = false;
+		merged[n] = false;
+		mass[n] = 0f;
+		com[2*n] = 0f;
+		com[2*n+1] = 0f;
+		extent[n] = width;
+		return n;
+	}
+
+	/**
+	 * Get the given child of a node, creating it if necessary.
+	 * @param n the parent node
+	 * @param i the child index (0-3)
+	 * @param x1 the minimum x-coordinate of the child cell
+	 * @param x2 the maximum x-coordinate of the child cell
+	 * @return the id of the child node
+	 */
+	int child(int n, int i, float x1, float x2) {
+		int c = children[4*n+i];
+		if ( c == EMPTY ) {
+			c = newNode(x2 - x1);
+			children[4*n+i] = c;
+			hasChildren[n] = true;
+		}
+		return c;
+	}
+
+	/**
+	 * @return the child index (0-3) of the cell (x1, y1, x2, y2) containing the point (x, y)
+	 */
+	static int quadrant(float x, float y, float x1, float y1, float x2, float y2) {
+		float splitx = (x1+x2)/2;
+		float splity = (y1+y2)/2;
+		return (x>=splitx ? 1 : 0) + (y>=splity ? 2 : 0);
+	}
+
+	/**
+	 * Inserts a particle below the given node, walking down iteratively. By
+	 * construction, each leaf will contain either 1 or 0 particles; a
+	 * particle in the same place as the one already held by a node is
+	 * pushed into a child instead, and the node keeps its own particle.
+	 * Only a leaf at {@link #MAX_DEPTH} or narrower than {@link #MIN_EXTENT}
+	 * holds several particles, merged into it.
+	 * @param store the ParticleStore holding the particle
+	 * @param item the index of the particle to insert
+	 * @param n the node to insert below
+	 * @param depth the depth of that node, used to track the tree depth
+	 * @param x1 the minimum x-coordinate of the node's cell
+	 * @param y1 the minimum y-coordinate of the node's cell
+	 * @param x2 the maximum x-coordinate of the node's cell
+	 * @param y2 the maximum y-coordinate of the node's cell
+	 * @throws RuntimeException if the location of the particle or the
+	 * bounds of the cell are not finite
+	 */
+	void insert(ParticleStore store, int item, int n, int depth, float x1, float y1, float x2, float y2) {
+		float[] location = store.location;
+		float px = location[2*item], py = location[2*item+1];
+		if (Float.isNaN(px) || Float.isNaN(py) || Float.isInfinite(px) || Float.isInfinite(py))
+			throw new RuntimeException("Invalid node position!");
+		if ( depth > maxDepth )
+			maxDepth = depth;
+		while ( true ) {
+			if (Float.isInfinite(x1) || Float.isInfinite(x2) || Float.isInfinite(y1) || Float.isInfinite(y2))
+				throw new RuntimeException("Infinite node position!");
+
+			if ( !hasChildren[n] && value[n] == EMPTY ) { // n is empty, so is a leaf
+				value[n] = item;
+				return;
+			}
+			if ( !hasChildren[n] && (depth >= MAX_DEPTH || x2 - x1 < MIN_EXTENT) ) {
+				// the cell is too small to be split any further
+				merge(n, item, store.size());
+				return;
+			}
+			if ( !hasChildren[n] && !isSameLocation(location, value[n], item) ) {
+				// n contains 1 particle: push it down a level before descending
+				int v = value[n];
+				value[n] = EMPTY;
+				int q = quadrant(location[2*v], location[2*v+1], x1, y1, x2, y2);
+				float splitx = (x1+x2)/2;
+				int c = (q==1 || q==3) ? child(n, q, splitx, x2) : child(n, q, x1, splitx);
+				value[c] = v;
+			}
+			// n contains more than 1 particle, or one in the same place
+			float splitx = (x1+x2)/2;
+			float splity = (y1+y2)/2;
+			int i = quadrant(px, py, x1, y1, x2, y2);
+			if ( i==1 || i==3 ) x1 = splitx; else x2 = splitx;
+			if ( i > 1 )        y1 = splity; else y2 = splity;
+			n = child(n, i, x1, x2);
+			if ( ++depth > maxDepth )
+				maxDepth = depth;
+		}
+	}
+
+	/**
+	 * Add a particle to the chain of particles held by a leaf.
+	 * @param n the leaf, holding at least one particle
+	 * @param item the index of the particle to add
+	 * @param particles the number of particles of the store
+	 */
+	private void merge(int n, int item, int particles) {
+		if ( next.length < particles )
+			next = Arrays.copyOf(next, Math.max(particles, 2*next.length));
+		int head = value[n];
+		if ( !merged[n] ) {
+			merged[n] = true;
+			next[head] = EMPTY;
+		}
+		next[item] = next[head];
+		next[head] = item;
+	}
+
+	private static boolean isSameLocation(float[] location, int f1, int f2) {
+		float dx = Math.abs(location[2*f1] - location[2*f2]);
+		float dy = Math.abs(location[2*f1+1] - location[2*f2+1]);
+		return (dx < 0.001f && dy < 0.001f);
+	}
+
+	/**
+	 * Compute the masses and centers of mass of the nodes in [from, to).
+	 * The pass runs backwards, so every child is visited before its parent;
+	 * the children of the given nodes outside the range must already be done.
+	 * @param store the ParticleStore holding the particles
+	 * @param from the first node id
+	 * @param to one past the last node id
+	 */
+	void calcMass(ParticleStore store, int from, int to) {
+		for ( int n = to-1; n >= from; n-- ) {
+			float xcom = 0, ycom = 0;
+			mass[n] = 0;
+			if ( hasChildren[n] ) {
+				for ( int i = 0; i < 4; i++ ) {
+					int c = children[4*n+i];
+					if ( c != EMPTY ) {
+						mass[n] += mass[c];
+						xcom += mass[c] * com[2*c];
+						ycom += mass[c] * com[2*c+1];
+					}
+				}
+			}
+			for ( int v = value[n]; v != EMPTY; v = merged[n] ? next[v] : EMPTY ) {
+				float m = store.mass[v];
+				mass[n] += m;
+				xcom += m * store.location[2*v];
+				ycom += m * store.location[2*v+1];
+			}
+			com[2*n] = xcom / mass[n];
+			com[2*n+1] = ycom / mass[n];
+		}
+	}
+
+	/**
+	 * Copy all nodes of another tree to the end of this arena, shifting
+	 * their child ids accordingly, along with the chains of its merged leaves.
+	 * @param other the tree to copy
+	 * @param depth the depth at which the other tree's root is grafted
+	 * @return the id of the other tree's root within this arena
+	 */
+	int append(QuadTree other, int depth) {
+		int offset = nodeCount;
+		int count = other.nodeCount;
+		ensureCapacity(offset + count);
+		for ( int i = 0; i < 4*count; i++ ) {
+			int c = other.children[i];
+			children[4*offset+i] = (c == EMPTY ? EMPTY : c + offset);
+		}
+		System.arraycopy(other.value, 0, value, offset, count);
+		System.arraycopy(other.hasChildren, 0, hasChildren, offset, count);
+		System.arraycopy(other.merged, 0, merged, offset, count);
+		for ( int i = 0; i < count; i++ ) {
+			if ( !other.merged[i] ) continue;
+			if ( next.length < other.next.length )
+				next = Arrays.copyOf(next, other.next.length);
+			for ( int v = other.value[i]; v != EMPTY; v = other.next[v] )
+				next[v] = other.next[v];
+		}
+		System.arraycopy(other.mass, 0, mass, offset, count);
+		System.arraycopy(other.com, 0, com, 2*offset, 2*count);
+		System.arraycopy(other.extent, 0, extent, offset, count);
+		nodeCount += count;
+		maxDepth = Math.max(maxDepth, depth + other.maxDepth);
+		return offset;
+	}
+
+} // end of class QuadTree
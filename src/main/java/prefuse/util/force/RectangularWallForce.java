@@ -27,26 +27,29 @@ public class RectangularWallForce extends BoundaryWallForce {
 	}
 	
 	/**
-	 * @see prefuse.util.force.Force#getForce(prefuse.util.force.ForceItem)
+	 * @see prefuse.util.force.Force#getForce(prefuse.util.force.ParticleStore, int)
 	 */
 	@Override
-	public void getForce(ForceItem item) {
-		float[] n = item.location;
-		float dx = (float) center.getX() - n[0];
-		float dy = (float) center.getY() - n[1];
+	public void getForce(ParticleStore store, int i) {
+		float[] n = store.location, forces = store.force;
+		int x = 2*i, y = x+1;
+		float mass = store.mass[i];
+		float itemWidth = store.dimensions[x], itemHeight = store.dimensions[y];
+		float dx = (float) center.getX() - n[x];
+		float dy = (float) center.getY() - n[y];
 
 		if(dx == 0f && dy == 0f) {
-			dx = getRandDisplacement();
-			dy = getRandDisplacement();
+			dx = getRandDisplacement(i, 0);
+			dy = getRandDisplacement(i, 1);
 		}
 
 		//initialize dimensions and displacements
 		float width = (float) this.dimensions.getX();
 		float height = (float) this.dimensions.getY();
-		float drLeft = Math.abs((width / 2f) - dx - item.dimensions[0] / 2);
-		float drTop = Math.abs((height / 2f) - dy - item.dimensions[1] / 2);
-		float drRight = Math.abs(width - drLeft - item.dimensions[0]); 
-		float drBottom = Math.abs(height - drTop - item.dimensions[1]);
+		float drLeft = Math.abs((width / 2f) - dx - itemWidth / 2);
+		float drTop = Math.abs((height / 2f) - dy - itemHeight / 2);
+		float drRight = Math.abs(width - drLeft - itemWidth); 
+		float drBottom = Math.abs(height - drTop - itemHeight);
 		if(drLeft < 0.01f) drLeft = 0.01f;
 		if(drRight < 0.01f) drRight = 0.01f;
 		if(drTop < 0.01f) drTop = 0.01f;
@@ -61,37 +64,37 @@ public class RectangularWallForce extends BoundaryWallForce {
 
 		//calculate forces due to each wall of the rectangle
 		float gravConst = (cX == -1 || cY == -1 ? params[OUT_GRAVITATIONAL_CONST] : params[IN_GRAVITATIONAL_CONST]);
-		float vLeft = -cX * gravConst * item.mass / (drLeft * drLeft * drLeft);
-		float vTop = -cY * gravConst * item.mass / (drTop * drTop * drTop);
-		float vRight = cX * gravConst * item.mass / (drRight * drRight * drRight);
-		float vBottom = cY * gravConst * item.mass / (drBottom * drBottom * drBottom);
+		float vLeft = -cX * gravConst * mass / (drLeft * drLeft * drLeft);
+		float vTop = -cY * gravConst * mass / (drTop * drTop * drTop);
+		float vRight = cX * gravConst * mass / (drRight * drRight * drRight);
+		float vBottom = cY * gravConst * mass / (drBottom * drBottom * drBottom);
 
 		if(cX + cY == -2) {//case where the node is outside the corner of the shape
 			float xCorner = (float) center.getX() + (width / 2 * (dx > 0 ? -1 : 1));
 			float yCorner = (float) center.getY() + (height / 2 * (dy > 0 ? -1 : 1));
-			float dxCorner = n[0] - xCorner;
-			float dyCorner = n[1] - yCorner;
+			float dxCorner = n[x] - xCorner;
+			float dyCorner = n[y] - yCorner;
 			float dCorner = (float) Math.sqrt(dxCorner * dxCorner + dyCorner * dyCorner);
-			float vCorner = params[OUT_GRAVITATIONAL_CONST] * item.mass / (dCorner * dCorner * dCorner);
+			float vCorner = params[OUT_GRAVITATIONAL_CONST] * mass / (dCorner * dCorner * dCorner);
 			float vxCorner = Math.abs(vCorner) * (dxCorner < 0 ? -1 : 1);
 			float vyCorner = Math.abs(vCorner) * (dyCorner < 0 ? -1 : 1);
-			item.force[0] += vxCorner;
-			item.force[1] += vyCorner;
+			forces[x] += vxCorner;
+			forces[y] += vyCorner;
 		} else if(cX == -1) {//case where the node is within the x normal lines of the shape
 			if(dx < 0)
-				item.force[0] += vRight;
+				forces[x] += vRight;
 			else
-				item.force[0] += vLeft;
+				forces[x] += vLeft;
 		} else if(cY == -1) {//case where the node is within the y normal lines of the shape
 			if(dy < 0)
-				item.force[1] += vBottom;
+				forces[y] += vBottom;
 			else 
-				item.force[1] += vTop;
+				forces[y] += vTop;
 		} else {//case where the node is completely inside the shape
-			item.force[0] += vLeft;
-			item.force[1] += vTop;
-			item.force[0] += vRight;
-			item.force[1] += vBottom;
+			forces[x] += vLeft;
+			forces[y] += vTop;
+			forces[x] += vRight;
+			forces[y] += vBottom;
 		}
 	}
 }
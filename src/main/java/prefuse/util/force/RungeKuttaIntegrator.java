@@ -1,7 +1,5 @@
 package prefuse.util.force;
 
-import java.util.Iterator;
-
 /**
  * Updates velocity and position data using the 4th-Order Runge-Kutta method.
  * It is slower but more accurate than other techniques such as Euler's Method.
@@ -15,113 +13,106 @@ public class RungeKuttaIntegrator implements Integrator {
      * @see prefuse.util.force.Integrator#integrate(prefuse.util.force.ForceSimulator, long)
      */
     public void integrate(ForceSimulator sim, long timestep) {
+        ParticleStore store = sim.getParticleStore();
         float speedLimit = sim.getSpeedLimit();
-        float vx, vy, v, coeff;
-        float[][] k, l;
-        
-        Iterator iter = sim.getItems();
-        while ( iter.hasNext() ) {
-            ForceItem item = (ForceItem)iter.next();
-            coeff = timestep / item.mass;
-            k = item.k;
-            l = item.l;
-            item.plocation[0] = item.location[0];
-            item.plocation[1] = item.location[1];
-            k[0][0] = timestep*item.velocity[0];
-            k[0][1] = timestep*item.velocity[1];
-            l[0][0] = coeff*item.force[0];
-            l[0][1] = coeff*item.force[1];
         
-            // Set the position to the new predicted position
-            item.location[0] += 0.5f*k[0][0];
-            item.location[1] += 0.5f*k[0][1];
-        }
+        firstStage(store, timestep);
         
         // recalculate forces
-        sim.accumulate();
+        sim.accumulate(true);
+        intermediateStage(store, timestep, speedLimit, 1);
         
-        iter = sim.getItems();
-        while ( iter.hasNext() ) {
-            ForceItem item = (ForceItem)iter.next();
-            coeff = timestep / item.mass;
-            k = item.k;
-            l = item.l;
-            vx = item.velocity[0] + .5f*l[0][0];
-            vy = item.velocity[1] + .5f*l[0][1];
-            v = (float)Math.sqrt(vx*vx+vy*vy);
-            if ( v > speedLimit ) {
-                vx = speedLimit * vx / v;
-                vy = speedLimit * vy / v;
-            }
-            k[1][0] = timestep*vx;
-            k[1][1] = timestep*vy;
-            l[1][0] = coeff*item.force[0];
-            l[1][1] = coeff*item.force[1];
+        // recalculate forces
+        sim.accumulate(true);
+        intermediateStage(store, timestep, speedLimit, 2);
         
+        // recalculate forces
+        sim.accumulate(true);
+        finalStage(store, timestep, speedLimit);
+    }
+    
+    private static void firstStage(ParticleStore store, long timestep) {
+        float[] mass = store.mass, force = store.force, velocity = store.velocity;
+        float[] location = store.location, plocation = store.plocation;
+        float[] k = store.k, l = store.l;
+        boolean[] asleep = store.asleep;
+        for ( int i = 0, n = store.size(); i < n; i++ ) {
+            if ( asleep[i] ) continue;
+            int x = 2*i, y = x+1, s = ParticleStore.STAGES*x;
+            float coeff = timestep / mass[i];
+            plocation[x] = location[x];
+            plocation[y] = location[y];
+            k[s]   = timestep*velocity[x];
+            k[s+1] = timestep*velocity[y];
+            l[s]   = coeff*force[x];
+            l[s+1] = coeff*force[y];
+            
             // Set the position to the new predicted position
-            item.location[0] = item.plocation[0] + 0.5f*k[1][0];
-            item.location[1] = item.plocation[1] + 0.5f*k[1][1];
+            location[x] += 0.5f*k[s];
+            location[y] += 0.5f*k[s+1];
         }
-        
-        // recalculate forces
-        sim.accumulate();
-        
-        iter = sim.getItems();
-        while ( iter.hasNext() ) {
-            ForceItem item = (ForceItem)iter.next();
-            coeff = timestep / item.mass;
-            k = item.k;
-            l = item.l;
-            vx = item.velocity[0] + .5f*l[1][0];
-            vy = item.velocity[1] + .5f*l[1][1];
-            v = (float)Math.sqrt(vx*vx+vy*vy);
+    }
+    
+    private static void intermediateStage(ParticleStore store, long timestep, float speedLimit, int stage) {
+        float[] mass = store.mass, force = store.force, velocity = store.velocity;
+        float[] location = store.location, plocation = store.plocation;
+        float[] k = store.k, l = store.l;
+        boolean[] asleep = store.asleep;
+        for ( int i = 0, n = store.size(); i < n; i++ ) {
+            if ( asleep[i] ) continue;
+            int x = 2*i, y = x+1, s = ParticleStore.STAGES*x;
+            int prev = s + 2*(stage-1), cur = s + 2*stage;
+            float coeff = timestep / mass[i];
+            float vx = velocity[x] + .5f*l[prev];
+            float vy = velocity[y] + .5f*l[prev+1];
+            float v = (float)Math.sqrt(vx*vx+vy*vy);
             if ( v > speedLimit ) {
                 vx = speedLimit * vx / v;
                 vy = speedLimit * vy / v;
             }
-            k[2][0] = timestep*vx;
-            k[2][1] = timestep*vy;
-            l[2][0] = coeff*item.force[0];
-            l[2][1] = coeff*item.force[1];
-        
+            k[cur]   = timestep*vx;
+            k[cur+1] = timestep*vy;
+            l[cur]   = coeff*force[x];
+            l[cur+1] = coeff*force[y];
+            
             // Set the position to the new predicted position
-            item.location[0] = item.plocation[0] + 0.5f*k[2][0];
-            item.location[1] = item.plocation[1] + 0.5f*k[2][1];
+            location[x] = plocation[x] + 0.5f*k[cur];
+            location[y] = plocation[y] + 0.5f*k[cur+1];
         }
-        
-        // recalculate forces
-        sim.accumulate();
-        
-        iter = sim.getItems();
-        while ( iter.hasNext() ) {
-            ForceItem item = (ForceItem)iter.next();
-            coeff = timestep / item.mass;
-            k = item.k;
-            l = item.l;
-            float[] p = item.plocation;
-            vx = item.velocity[0] + l[2][0];
-            vy = item.velocity[1] + l[2][1];
-            v = (float)Math.sqrt(vx*vx+vy*vy);
+    }
+    
+    private static void finalStage(ParticleStore store, long timestep, float speedLimit) {
+        float[] mass = store.mass, force = store.force, velocity = store.velocity;
+        float[] location = store.location, plocation = store.plocation;
+        float[] k = store.k, l = store.l;
+        boolean[] asleep = store.asleep;
+        for ( int i = 0, n = store.size(); i < n; i++ ) {
+            if ( asleep[i] ) continue;
+            int x = 2*i, y = x+1, s = ParticleStore.STAGES*x;
+            float coeff = timestep / mass[i];
+            float vx = velocity[x] + l[s+4];
+            float vy = velocity[y] + l[s+5];
+            float v = (float)Math.sqrt(vx*vx+vy*vy);
             if ( v > speedLimit ) {
                 vx = speedLimit * vx / v;
                 vy = speedLimit * vy / v;
             }
-            k[3][0] = timestep*vx;
-            k[3][1] = timestep*vy;
-            l[3][0] = coeff*item.force[0];
-            l[3][1] = coeff*item.force[1];
-            item.location[0] = p[0] + (k[0][0]+k[3][0])/6.0f + (k[1][0]+k[2][0])/3.0f;
-            item.location[1] = p[1] + (k[0][1]+k[3][1])/6.0f + (k[1][1]+k[2][1])/3.0f;
+            k[s+6] = timestep*vx;
+            k[s+7] = timestep*vy;
+            l[s+6] = coeff*force[x];
+            l[s+7] = coeff*force[y];
+            location[x] = plocation[x] + (k[s]+k[s+6])/6.0f + (k[s+2]+k[s+4])/3.0f;
+            location[y] = plocation[y] + (k[s+1]+k[s+7])/6.0f + (k[s+3]+k[s+5])/3.0f;
             
-            vx = (l[0][0]+l[3][0])/6.0f + (l[1][0]+l[2][0])/3.0f;
-            vy = (l[0][1]+l[3][1])/6.0f + (l[1][1]+l[2][1])/3.0f;
+            vx = (l[s]+l[s+6])/6.0f + (l[s+2]+l[s+4])/3.0f;
+            vy = (l[s+1]+l[s+7])/6.0f + (l[s+3]+l[s+5])/3.0f;
             v = (float)Math.sqrt(vx*vx+vy*vy);
             if ( v > speedLimit ) {
                 vx = speedLimit * vx / v;
                 vy = speedLimit * vy / v;
             }
-            item.velocity[0] += vx;
-            item.velocity[1] += vy;
+            velocity[x] += vx;
+            velocity[y] += vy;
         }
     }
 
@@ -60,14 +60,14 @@ public class SpringForce extends AbstractForce {
 	 * @see prefuse.util.force.Force#getForce(prefuse.util.force.Spring)
 	 */
 	public void getForce(Spring s) {
-		ForceItem item1 = s.item1;
-		ForceItem item2 = s.item2;
+		ParticleStore st1 = s.item1.getStore(), st2 = s.item2.getStore();
+		int i1 = s.item1.getIndex(), i2 = s.item2.getIndex();
 		float length = (s.length < 0 ? params[SPRING_LENGTH] : s.length);
-		float x1 = item1.location[0], y1 = item1.location[1];
-		float x2 = item2.location[0], y2 = item2.location[1];
+		float x1 = st1.location[2*i1], y1 = st1.location[2*i1+1];
+		float x2 = st2.location[2*i2], y2 = st2.location[2*i2+1];
 		float dx = x2-x1, dy = y2-y1;
-		dx -= item1.dimensions[0] + item2.dimensions[0];
-		dy -= item2.dimensions[1] + item2.dimensions[1];
+		dx -= st1.dimensions[2*i1] + st2.dimensions[2*i2];
+		dy -= st2.dimensions[2*i2+1] + st2.dimensions[2*i2+1];
 		float r  = (float)Math.sqrt(dx*dx+dy*dy);
 
 		if ( r == 0.0 ) {
@@ -77,9 +77,9 @@ public class SpringForce extends AbstractForce {
 		}
 		float d  = r-length;
 		float coeff = (s.coeff < 0 ? params[SPRING_COEFF] : s.coeff)*d/r;
-		item1.force[0] += coeff*dx;
-		item1.force[1] += coeff*dy;
-		item2.force[0] += -coeff*dx;
-		item2.force[1] += -coeff*dy;
+		st1.force[2*i1]   += coeff*dx;
+		st1.force[2*i1+1] += coeff*dy;
+		st2.force[2*i2]   += -coeff*dx;
+		st2.force[2*i2+1] += -coeff*dy;
 	}
 } // end of class SpringForce
\ No newline at end of file
@@ -0,0 +1,66 @@
+package prefuse.util.force;
+
+/**
+ * Updates velocity and position data using the leapfrog form of the
+ * velocity Verlet method. Velocities are kept half a step ahead of the
+ * positions, so each step needs only the forces at the current positions:
+ * the velocity is kicked across the midpoint between the previous and the
+ * current step, then the position drifts with the new velocity. The method
+ * is symplectic and needs a single force evaluation per timestep, making it
+ * about four times cheaper than {@link RungeKuttaIntegrator} while staying
+ * much better behaved than {@link EulerIntegrator}.
+ *
+ * <p>The integrator remembers the previous timestep, so an instance should
+ * only be used by one simulator at a time; {@link #reset()} starts a new
+ * trajectory.</p>
+ *
+ * @see RungeKuttaIntegrator
+ */
+public class VerletIntegrator implements Integrator {
+
+    private long previous = -1;
+
+    /**
+     * Forget the previous timestep, so that the next step starts a new
+     * trajectory with a half kick.
+     */
+    public void reset() {
+        previous = -1;
+    }
+
+    /**
+     * @see prefuse.util.force.Integrator#integrate(prefuse.util.force.ForceSimulator, long)
+     */
+    public void integrate(ForceSimulator sim, long timestep) {
+        float speedLimit = sim.getSpeedLimit();
+        ParticleStore store = sim.getParticleStore();
+        float[] mass = store.mass, force = store.force, velocity = store.velocity;
+        float[] location = store.location, plocation = store.plocation;
+        boolean[] asleep = store.asleep;
+
+        // the velocities lag half a step, so kick across the midpoint of
+        // the previous and the current step; the first step is a half kick
+        float kick = previous < 0 ? 0.5f*timestep : 0.5f*(previous + timestep);
+        previous = timestep;
+
+        for ( int i = 0, n = store.size(); i < n; i++ ) {
+            if ( asleep[i] ) continue;
+            int x = 2*i, y = x+1;
+            float coeff = kick / mass[i];
+            float vx = velocity[x] + coeff * force[x];
+            float vy = velocity[y] + coeff * force[y];
+            float v = (float)Math.sqrt(vx*vx+vy*vy);
+            if ( v > speedLimit ) {
+                vx = speedLimit * vx / v;
+                vy = speedLimit * vy / v;
+            }
+            velocity[x] = vx;
+            velocity[y] = vy;
+            plocation[x] = location[x];
+            plocation[y] = location[y];
+            location[x] += timestep * vx;
+            location[y] += timestep * vy;
+        }
+    }
+
+} // end of class VerletIntegrator
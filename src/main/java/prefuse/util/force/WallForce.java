@@ -71,14 +71,21 @@ public class WallForce extends AbstractForce {
      * @see prefuse.util.force.Force#getForce(prefuse.util.force.ForceItem)
      */
     public void getForce(ForceItem item) {
-        float[] n = item.location;
-        int ccw = Line2D.relativeCCW(x1,y1,x2,y2,n[0],n[1]);
-        float r = (float)Line2D.ptSegDist(x1,y1,x2,y2,n[0],n[1]);
+        getForce(item.getStore(), item.getIndex());
+    }
+    
+    /**
+     * @see prefuse.util.force.Force#getForce(prefuse.util.force.ParticleStore, int)
+     */
+    public void getForce(ParticleStore store, int i) {
+        float nx = store.location[2*i], ny = store.location[2*i+1];
+        int ccw = Line2D.relativeCCW(x1,y1,x2,y2,nx,ny);
+        float r = (float)Line2D.ptSegDist(x1,y1,x2,y2,nx,ny);
         if ( r == 0.0 ) r = (float)Math.random() / 100.0f;
-        float v = params[GRAVITATIONAL_CONST]*item.mass / (r*r*r);
-        if ( n[0] >= Math.min(x1,x2) && n[0] <= Math.max(x1,x2) )
-            item.force[1] += ccw*v*dx;
-        if ( n[1] >= Math.min(y1,y2) && n[1] <= Math.max(y1,y2) )
-            item.force[0] += -1*ccw*v*dy;
+        float v = params[GRAVITATIONAL_CONST]*store.mass[i] / (r*r*r);
+        if ( nx >= Math.min(x1,x2) && nx <= Math.max(x1,x2) )
+            store.force[2*i+1] += ccw*v*dx;
+        if ( ny >= Math.min(y1,y2) && ny <= Math.max(y1,y2) )
+            store.force[2*i] += -1*ccw*v*dy;
     }
 } // end of class WallForce
\ No newline at end of file
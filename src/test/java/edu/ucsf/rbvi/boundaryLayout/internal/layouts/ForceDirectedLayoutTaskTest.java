@@ -0,0 +1,87 @@
+package edu.ucsf.rbvi.boundaryLayout.internal.layouts;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+import org.junit.Test;
+
+public class ForceDirectedLayoutTaskTest {
+	// the distance two nodes may overlap by, allowing for the rounding of locations to floats
+	private static final double OVERLAP_TOLERANCE = 1e-3;
+
+	/**
+	 * Build a network of nodes spread over three intersecting boundaries and the outer boundary,
+	 * joined by random edges within and across categories
+	 */
+	private static TestNetwork newNetwork(int nodes, long seed) {
+		TestNetwork network = new TestNetwork();
+		network.addBoundary("A", "Rectangle", 0., 0., 600., 400.);
+		network.addBoundary("B", "Ellipse", 450., 150., 500., 500.);
+		network.addBoundary("C", "Rounded Rectangle", -300., 450., 500., 300.);
+		Object[] categories = {"A", "B", "C", null};
+		Random random = new Random(seed);
+		List<View<CyNode>> views = new ArrayList<>();
+		for(int i = 0; i < nodes; i++)
+			views.add(network.addNode(categories[i % categories.length],
+					30. + 20. * random.nextDouble(), 30. + 20. * random.nextDouble()));
+		for(int e = 0; e < 3 * nodes / 2; e++) {
+			View<CyNode> source = views.get(random.nextInt(nodes)), target = views.get(random.nextInt(nodes));
+			if(source != target)
+				network.addEdge(source, target);
+		}
+		return network;
+	}
+
+	private static void assertFinite(TestNetwork network) {
+		for(View<CyNode> nodeView : network.getNodeViews()) {
+			double x = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
+			double y = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION);
+			assertTrue("Node location (" + x + ", " + y + ") is not finite",
+					!Double.isNaN(x) && !Double.isInfinite(x) && !Double.isNaN(y) && !Double.isInfinite(y));
+		}
+	}
+
+	private static void assertNoOverlaps(TestNetwork network) {
+		List<View<CyNode>> nodeViews = network.getNodeViews();
+		for(int i = 0; i < nodeViews.size(); i++) {
+			View<CyNode> a = nodeViews.get(i);
+			for(int j = i + 1; j < nodeViews.size(); j++) {
+				View<CyNode> b = nodeViews.get(j);
+				double overlapX = (a.getVisualProperty(BasicVisualLexicon.NODE_WIDTH)
+						+ b.getVisualProperty(BasicVisualLexicon.NODE_WIDTH)) / 2.
+						- Math.abs(a.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION)
+						- b.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION));
+				double overlapY = (a.getVisualProperty(BasicVisualLexicon.NODE_HEIGHT)
+						+ b.getVisualProperty(BasicVisualLexicon.NODE_HEIGHT)) / 2.
+						- Math.abs(a.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION)
+						- b.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION));
+				assertTrue("Nodes " + i + " and " + j + " overlap by " + overlapX + " x " + overlapY,
+						overlapX <= OVERLAP_TOLERANCE || overlapY <= OVERLAP_TOLERANCE);
+			}
+		}
+	}
+
+	@Test
+	public void testDefaultLayoutStaysFinite() {
+		TestNetwork network = newNetwork(800, 1L);
+		network.layout(new ForceDirectedLayoutContext(network.registrar), ForceDirectedLayout.Integrators.RUNGEKUTTA);
+		assertFinite(network);
+	}
+
+	@Test
+	public void testRemoveOverlapsNearWalls() {
+		// the boundaries are crowded, pressing their nodes against the walls and into the shared area
+		TestNetwork network = newNetwork(150, 2L);
+		ForceDirectedLayoutContext context = new ForceDirectedLayoutContext(network.registrar);
+		context.removeOverlaps = true;
+		network.layout(context, ForceDirectedLayout.Integrators.RUNGEKUTTA);
+		assertFinite(network);
+		assertNoOverlaps(network);
+	}
+}
@@ -0,0 +1,172 @@
+package edu.ucsf.rbvi.boundaryLayout.internal.layouts;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.CyVersion;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.service.util.CyServiceRegistrar;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.model.VisualProperty;
+import org.cytoscape.view.presentation.annotations.Annotation;
+import org.cytoscape.view.presentation.annotations.AnnotationManager;
+import org.cytoscape.view.presentation.annotations.ShapeAnnotation;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * A network view with its nodes, edges and shape annotations held in memory, for running
+ * the boundary layout outside of Cytoscape. The Cytoscape interfaces are implemented by
+ * proxies answering the few calls the layout makes; every other call returns a default value.
+ */
+class TestNetwork {
+	static final String CATEGORY = "category";
+
+	private final List<View<CyNode>> nodeViews = new ArrayList<>();
+	private final List<View<CyEdge>> edgeViews = new ArrayList<>();
+	private final Map<CyNode, View<CyNode>> viewOf = new IdentityHashMap<>();
+	private final Map<CyNode, Object> categoryOf = new IdentityHashMap<>();
+	private final List<Annotation> annotations = new ArrayList<>();
+
+	final CyNetworkView view;
+	final CyServiceRegistrar registrar;
+	final TaskMonitor monitor = fake(TaskMonitor.class, new HashMap<>());
+
+	/**
+	 * Answers a call to a proxied method
+	 */
+	interface Answer {
+		Object answer(Object[] args);
+	}
+
+	TestNetwork() {
+		Map<String, Answer> network = new HashMap<>();
+		network.put("getRow", args -> fake(CyRow.class, answers("getRaw",
+				rowArgs -> CATEGORY.equals(rowArgs[0]) ? categoryOf.get(args[0]) : null)));
+		CyNetwork model = fake(CyNetwork.class, network);
+
+		Map<String, Answer> networkView = new HashMap<>();
+		networkView.put("getModel", args -> model);
+		networkView.put("getNodeViews", args -> new ArrayList<>(nodeViews));
+		networkView.put("getEdgeViews", args -> new ArrayList<>(edgeViews));
+		networkView.put("getNodeView", args -> viewOf.get(args[0]));
+		view = fake(CyNetworkView.class, networkView);
+
+		AnnotationManager manager = fake(AnnotationManager.class,
+				answers("getAnnotations", args -> new ArrayList<>(annotations)));
+		CyVersion version = fake(CyVersion.class, answers("getMinorVersion", args -> 7));
+		CyApplicationManager applicationManager = fake(CyApplicationManager.class, new HashMap<>());
+		registrar = fake(CyServiceRegistrar.class, answers("getService", args ->
+				args[0] == AnnotationManager.class ? manager : args[0] == CyVersion.class ? version
+				: args[0] == CyApplicationManager.class ? applicationManager : null));
+	}
+
+	/**
+	 * Add a boundary, a shape annotation named after its category
+	 * @param shapeType is "Rectangle" or "Ellipse"
+	 */
+	void addBoundary(String name, String shapeType, double x, double y, double width, double height) {
+		Map<String, String> argMap = new HashMap<>();
+		argMap.put(ShapeAnnotation.X, Double.toString(x));
+		argMap.put(ShapeAnnotation.Y, Double.toString(y));
+		argMap.put(ShapeAnnotation.WIDTH, Double.toString(width));
+		argMap.put(ShapeAnnotation.HEIGHT, Double.toString(height));
+		Map<String, Answer> shape = new HashMap<>();
+		shape.put("getName", args -> name);
+		shape.put("getShapeType", args -> shapeType);
+		shape.put("getArgMap", args -> argMap);
+		shape.put("getZoom", args -> 1.);
+		annotations.add(fake(ShapeAnnotation.class, shape));
+	}
+
+	/**
+	 * Add a node of the given category, null for none, and size, located at the origin
+	 * @return the view of the new node
+	 */
+	View<CyNode> addNode(Object category, double width, double height) {
+		CyNode node = fake(CyNode.class, new HashMap<>());
+		Map<VisualProperty<?>, Object> properties = new HashMap<>();
+		properties.put(BasicVisualLexicon.NODE_X_LOCATION, 0.);
+		properties.put(BasicVisualLexicon.NODE_Y_LOCATION, 0.);
+		properties.put(BasicVisualLexicon.NODE_WIDTH, width);
+		properties.put(BasicVisualLexicon.NODE_HEIGHT, height);
+		Map<String, Answer> nodeView = new HashMap<>();
+		nodeView.put("getModel", args -> node);
+		nodeView.put("getVisualProperty", args -> properties.get(args[0]));
+		nodeView.put("setVisualProperty", args -> properties.put((VisualProperty<?>) args[0], args[1]));
+		@SuppressWarnings("unchecked")
+		View<CyNode> view = fake(View.class, nodeView);
+		nodeViews.add(view);
+		viewOf.put(node, view);
+		categoryOf.put(node, category);
+		return view;
+	}
+
+	/**
+	 * Add an edge between the nodes of two views
+	 */
+	void addEdge(View<CyNode> source, View<CyNode> target) {
+		Map<String, Answer> edgeAnswers = new HashMap<>();
+		edgeAnswers.put("getSource", args -> source.getModel());
+		edgeAnswers.put("getTarget", args -> target.getModel());
+		CyEdge edge = fake(CyEdge.class, edgeAnswers);
+		@SuppressWarnings("unchecked")
+		View<CyEdge> view = fake(View.class, answers("getModel", args -> edge));
+		edgeViews.add(view);
+	}
+
+	/**
+	 * @return the views of the nodes, in the order they were added
+	 */
+	List<View<CyNode>> getNodeViews() {
+		return nodeViews;
+	}
+
+	/**
+	 * Run the boundary layout over all nodes, laid out by their category
+	 */
+	void layout(ForceDirectedLayoutContext context, ForceDirectedLayout.Integrators integrator) {
+		new ForceDirectedLayoutTask("Boundary Layout", view, null, context, CATEGORY, integrator, registrar, null)
+				.doLayout(monitor);
+	}
+
+	private static Map<String, Answer> answers(String method, Answer answer) {
+		Map<String, Answer> answers = new HashMap<>();
+		answers.put(method, answer);
+		return answers;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> T fake(Class<T> type, Map<String, Answer> answers) {
+		InvocationHandler handler = (proxy, method, args) -> {
+			switch(method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+			}
+			Answer answer = answers.get(method.getName());
+			if(answer != null)
+				return answer.answer(args);
+			Class<?> returnType = method.getReturnType();
+			if(returnType == boolean.class)
+				return false;
+			if(returnType == void.class || !returnType.isPrimitive())
+				return null;
+			return returnType == double.class ? 0. : returnType == float.class ? 0f : returnType == long.class ? 0L : 0;
+		};
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+	}
+}
@@ -0,0 +1,82 @@
+package prefuse.util.force;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ForceSimulatorTest {
+
+	/**
+	 * An item force adding nothing, counting how often its far field is refreshed
+	 */
+	private static class CountingForce extends AbstractForce {
+		int inits;
+
+		CountingForce(int interval) {
+			params = new float[0];
+			setUpdateInterval(interval);
+		}
+
+		public void init(ForceSimulator fsim) {
+			inits++;
+		}
+
+		public boolean isItemForce() {
+			return true;
+		}
+
+		public void getForce(ForceItem item) {
+		}
+
+		protected String[] getParameterNames() {
+			return new String[0];
+		}
+	}
+
+	private static ForceItem addItem(ForceSimulator sim, float x, float y) {
+		ForceItem item = new ForceItem();
+		item.setLocation(x, y);
+		item.setDimensions(10f, 10f);
+		sim.addItem(item);
+		return item;
+	}
+
+	@Test
+	public void testCacheAgesByStep() {
+		ForceSimulator sim = new ForceSimulator(new RungeKuttaIntegrator());
+		CountingForce force = new CountingForce(3);
+		sim.addForce(force);
+		addItem(sim, 0f, 0f);
+		addItem(sim, 100f, 0f);
+		for ( int step = 0; step < 6; step++ )
+			sim.runSimulator(10L);
+		// refreshed on the first and the fourth step, whatever the stages of the integrator
+		assertEquals(2, force.inits);
+	}
+
+	@Test
+	public void testNearFieldIsNotCached() {
+		ForceSimulator cached = new ForceSimulator(), direct = new ForceSimulator();
+		NBodyForce cachedForce = new NBodyForce(true);
+		cachedForce.setUpdateInterval(5);
+		cached.addForce(cachedForce);
+		direct.addForce(new NBodyForce(true));
+		ForceItem[] items = new ForceItem[2], expected = new ForceItem[2];
+		for ( int i = 0; i < 2; i++ ) {
+			items[i] = addItem(cached, 30f * i, 0f);
+			expected[i] = addItem(direct, 30f * i, 0f);
+		}
+		cached.accumulate();
+
+		// the items move into overlap before the far field is refreshed
+		items[1].setLocation(8f, 3f);
+		expected[1].setLocation(8f, 3f);
+		cached.accumulate();
+		direct.accumulate();
+		for ( int i = 0; i < 2; i++ ) {
+			assertEquals(expected[i].getForceX(), items[i].getForceX(), 1e-4f);
+			assertEquals(expected[i].getForceY(), items[i].getForceY(), 1e-4f);
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+package prefuse.util.force;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class QuadTreeTest {
+
+	private static ParticleStore newStore(float[] x, float[] y) {
+		ParticleStore store = new ParticleStore(x.length);
+		for ( int i = 0; i < x.length; i++ ) {
+			ForceItem item = new ForceItem();
+			item.setLocation(x[i], y[i]);
+			store.attach(item);
+		}
+		return store;
+	}
+
+	private static QuadTree build(ParticleStore store, float x1, float y1, float x2, float y2) {
+		QuadTree tree = new QuadTree(16);
+		int root = tree.newNode(x2 - x1);
+		for ( int i = 0; i < store.size(); i++ )
+			tree.insert(store, i, root, 0, x1, y1, x2, y2);
+		tree.calcMass(store, 0, tree.nodeCount);
+		return tree;
+	}
+
+	@Test
+	public void testCoincidentItemsAreMerged() {
+		int n = 1000;
+		float[] x = new float[n], y = new float[n];
+		for ( int i = 0; i < n; i++ ) {
+			x[i] = 5f;
+			y[i] = 5f;
+		}
+		ParticleStore store = newStore(x, y);
+		QuadTree tree = build(store, 0f, 0f, 10f, 10f);
+		assertTrue("depth " + tree.maxDepth, tree.maxDepth <= QuadTree.MAX_DEPTH);
+		assertEquals(n, tree.mass[0], 1e-3f);
+		assertEquals(5f, tree.com[0], 1e-4f);
+		assertEquals(5f, tree.com[1], 1e-4f);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testNaNLocationIsRejected() {
+		ParticleStore store = newStore(new float[] {1f, Float.NaN, 3f}, new float[] {1f, 2f, 3f});
+		build(store, 0f, 0f, 4f, 4f);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testNaNLocationIsRejectedByParallelBuild() {
+		ForceSimulator sim = new ForceSimulator();
+		sim.addForce(new ParallelNBodyForce(false));
+		for ( int i = 0; i < 100; i++ ) {
+			ForceItem item = new ForceItem();
+			item.setLocation(i, i % 10);
+			sim.addItem(item);
+		}
+		ForceItem item = new ForceItem();
+		item.setLocation(Float.NaN, 0f);
+		sim.addItem(item);
+		sim.accumulate();
+	}
+
+	@Test
+	public void testCoincidentItemsGetFiniteForces() {
+		for ( NBodyForce force : new NBodyForce[] {new NBodyForce(true), new ParallelNBodyForce(true)} ) {
+			ForceSimulator sim = new ForceSimulator();
+			sim.addForce(force);
+			for ( int i = 0; i < 200; i++ ) {
+				ForceItem item = new ForceItem();
+				item.setLocation(i < 100 ? 0f : i, 0f);
+				item.setDimensions(10f, 10f);
+				sim.addItem(item);
+			}
+			sim.accumulate();
+			ParticleStore store = sim.getParticleStore();
+			for ( int i = 0; i < 2*store.size(); i++ )
+				assertTrue("force " + store.force[i], !Float.isNaN(store.force[i]) && !Float.isInfinite(store.force[i]));
+		}
+	}
+
+}
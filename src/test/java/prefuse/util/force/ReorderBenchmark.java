@@ -0,0 +1,90 @@
+package prefuse.util.force;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Measures the effect of {@link ForceSimulator#setReorderInterval(int)} on the
+ * time of a simulation step. The items are scattered uniformly over a square
+ * and added in random order, so that items close in space are far apart in
+ * the particle store, and tied by springs to their neighbor along the x axis
+ * when it lies at about the same height. The same simulation is then run
+ * without reordering and with reordering, after a few warm-up steps each.
+ *
+ * <p>Usage: <code>ReorderBenchmark [items [steps [interval [threads]]]]</code>,
+ * by default 100000 items, 20 steps, reordering every 10 steps on a single
+ * thread. Large networks need a larger heap, e.g. <code>-Xmx4g</code>.</p>
+ */
+public class ReorderBenchmark {
+
+	private static final int WARMUP_STEPS = 3;
+	private static final long TIMESTEP = 50L;
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int interval = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		for ( int reorder : new int[] {0, interval} ) {
+			ForceItem[] items = new ForceItem[n];
+			ForceSimulator sim = newSimulation(items, reorder, threads);
+			for ( int s = 0; s < WARMUP_STEPS; s++ )
+				sim.runSimulator(TIMESTEP);
+			long start = System.nanoTime();
+			for ( int s = 0; s < steps; s++ )
+				sim.runSimulator(TIMESTEP);
+			double ms = (System.nanoTime() - start) / 1e6 / steps;
+			sim.shutdown();
+
+			double x = 0, y = 0;
+			for ( int i = 0; i < n; i++ ) {
+				x += items[i].getX() / n;
+				y += items[i].getY() / n;
+			}
+			System.out.println("items=" + n + " reorderInterval=" + reorder + " threads=" + threads
+					+ " ms/step=" + ms + " center=(" + x + ", " + y + ")");
+		}
+	}
+
+	/**
+	 * Create the simulation, always from the same seed.
+	 * @param items receives the items of the simulation
+	 */
+	private static ForceSimulator newSimulation(final ForceItem[] items, int reorder, int threads) {
+		int n = items.length;
+		Random random = new Random(1);
+		ForceSimulator sim = new ForceSimulator();
+		sim.addForce(new SpringForce());
+		sim.addForce(new ParallelNBodyForce(false));
+		sim.addForce(new DragForce());
+		float side = (float) Math.sqrt(n) * 60;
+		for ( int i = 0; i < n; i++ ) {
+			items[i] = new ForceItem();
+			items[i].setMass(3f);
+			items[i].setDimensions(30, 30);
+			items[i].setLocation(random.nextFloat() * side, random.nextFloat() * side);
+			sim.addItem(items[i]);
+		}
+
+		Integer[] byX = new Integer[n];
+		for ( int i = 0; i < n; i++ )
+			byX[i] = i;
+		Arrays.sort(byX, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Float.compare(items[a].getX(), items[b].getX());
+			}
+		});
+		for ( int i = 1; i < n; i++ ) {
+			ForceItem a = items[byX[i-1]], b = items[byX[i]];
+			if ( Math.abs(a.getY() - b.getY()) < side / 50 )
+				sim.addSpring(a, b, 5e-4f, 60f);
+		}
+
+		sim.speedLimit = 1f;
+		sim.setThreadCount(threads);
+		sim.setReorderInterval(reorder);
+		return sim;
+	}
+
+} // end of class ReorderBenchmark